@@ -0,0 +1,55 @@
+package com.tomaszwejner.weatherapp;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Nagrane odpowiedzi Open-Meteo i Nominatim (katalog fixtures w zasobach),
+ * dzięki którym benchmarki działają bez dostępu do sieci.
+ */
+final class BenchmarkFixtures {
+
+    // Parametry zaznaczane w oknie aplikacji (wszystkie checkboxy)
+    static final List<String> PARAMETERS = List.of("temperature_2m", "soil_temperature_0cm",
+            "windspeed_10m", "precipitation", "surface_pressure");
+
+    private BenchmarkFixtures() {
+    }
+
+    static byte[] bytes(String name) {
+        try (InputStream in = BenchmarkFixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Brak pliku fixtures/" + name);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String text(String name) {
+        return new String(bytes(name), StandardCharsets.UTF_8);
+    }
+
+    // Odpowiedź Open-Meteo sparsowana tak jak w WeatherService (z wartościami "aktualnymi" z current_weather)
+    static HourlyWeather weather(String name) {
+        try {
+            OpenMeteoParser.Response response = OpenMeteoParser.parse(
+                    new ByteArrayInputStream(bytes(name)), PARAMETERS);
+            if (!Double.isNaN(response.currentTemperature())) {
+                response.current().put("temperature_2m", response.currentTemperature());
+            }
+            if (!Double.isNaN(response.currentWindspeed())) {
+                response.current().put("windspeed_10m", response.currentWindspeed());
+            }
+            return response.weather();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.tomaszwejner.weatherapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Zapis i odczyt kolumny w cache (ColumnCodec): format binarny (wersja 1) wobec tekstowego
+ * (wersja 0) - wykonywane dla każdej zmiennej przy każdym trafieniu i zapisie do cache.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheCodecBenchmark {
+
+    @Param({"openmeteo-forecast-16d.json", "openmeteo-history-30d.json"})
+    public String fixture;
+
+    private double[] column;
+    private double current;
+    private String text;
+    private String binary;
+
+    @Setup
+    public void setUp() {
+        HourlyWeather weather = BenchmarkFixtures.weather(fixture);
+        column = weather.getColumn("temperature_2m");
+        current = weather.getCurrent("temperature_2m");
+        text = ColumnCodec.encodeText(column, current);
+        binary = ColumnCodec.encodeBinary(column, current);
+    }
+
+    @Benchmark
+    public String encodeText() {
+        return ColumnCodec.encodeText(column, current);
+    }
+
+    @Benchmark
+    public String encodeBinary() {
+        return ColumnCodec.encodeBinary(column, current);
+    }
+
+    @Benchmark
+    public ColumnCodec.CachedColumn decodeText() {
+        return ColumnCodec.decodeColumn(text);
+    }
+
+    @Benchmark
+    public ColumnCodec.CachedColumn decodeBinary() {
+        return ColumnCodec.decodeColumn(binary);
+    }
+}
@@ -0,0 +1,57 @@
+package com.tomaszwejner.weatherapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Budowa kluczy cache (WeatherService.generateCacheKey) - wykonywana przy każdym zapytaniu,
+ * raz dla osi czasu i raz dla każdej zmiennej.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheKeyBenchmark {
+
+    private WeatherService service;
+    private CacheKeys.GridCell cell;
+    private List<String> parameters;
+
+    @Setup
+    public void setUp() {
+        service = new WeatherService();
+        cell = CacheKeys.snap(52.2297, 21.0122);
+        parameters = BenchmarkFixtures.PARAMETERS;
+    }
+
+    // Klucz jednej zmiennej (tak jak w WeatherService.load)
+    @Benchmark
+    public String singleVariableKey() {
+        return service.generateCacheKey("forecast", cell, List.of("temperature_2m"), "2026-10-18", "2026-11-02");
+    }
+
+    // Klucz dla całego zestawu parametrów (klucz single flight)
+    @Benchmark
+    public String allVariablesKey() {
+        return service.generateCacheKey("forecast", cell, parameters, "2026-10-18", "2026-11-02");
+    }
+
+    // Przyciągnięcie współrzędnych do siatki razem z kluczem
+    @Benchmark
+    public String snapAndKey() {
+        return service.generateCacheKey("current", CacheKeys.snap(52.2297, 21.0122), List.of("temperature_2m"));
+    }
+}
@@ -0,0 +1,87 @@
+package com.tomaszwejner.weatherapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ścieżka od wyniku zapytania do okna: formatowanie tekstu godzina po godzinie,
+ * budowa WeatherData dla okien wykresów i kolumny pikseli wykresu temperatury,
+ * oraz zapis strumieniowy w formatach CSV/JSON (eksport, serwer HTTP).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FormatBenchmark {
+
+    @Param({"openmeteo-forecast-16d.json", "openmeteo-history-30d.json"})
+    public String fixture;
+
+    private HourlyWeather weather;
+    private HourlyWeather current;
+    private WeatherData weatherData;
+    private final WeatherRenderer csv = new CsvWeatherRenderer();
+    private final WeatherRenderer json = new JsonWeatherRenderer();
+    private final PixelColumns columns = new PixelColumns();
+
+    @Setup
+    public void setUp() {
+        weather = BenchmarkFixtures.weather(fixture);
+        current = BenchmarkFixtures.weather("openmeteo-current.json");
+        weatherData = WeatherData.fromHourly(weather, "Warszawa");
+    }
+
+    // Tekst prognozy / historii wyświetlany w oknie głównym
+    @Benchmark
+    public String formatHourly() {
+        return WeatherFormatter.formatHourly(weather, "Brak danych");
+    }
+
+    @Benchmark
+    public String formatCurrent() {
+        return WeatherFormatter.formatCurrent(current);
+    }
+
+    // Dane dla okien wykresów (następca parsowania tekstu z etykiety wyników)
+    @Benchmark
+    public WeatherData weatherDataFromHourly() {
+        return WeatherData.fromHourly(weather, "Warszawa");
+    }
+
+    // Redukcja serii temperatury do kolumn pikseli, jak przy rysowaniu TimeSeriesChart szerokości 820 px
+    @Benchmark
+    public int temperatureColumns() {
+        long[] hours = weather.getEpochHours();
+        return columns.compute(hours, weather.getColumn("temperature_2m"), hours[0], hours[hours.length - 1], 820);
+    }
+
+    // Zapis do Writer, jak przy eksporcie do pliku i odpowiedzi serwera
+    @Benchmark
+    public Writer renderCsv() throws IOException {
+        Writer out = Writer.nullWriter();
+        csv.render(weather, out);
+        return out;
+    }
+
+    @Benchmark
+    public Writer renderJson() throws IOException {
+        Writer out = Writer.nullWriter();
+        json.render(weather, out);
+        return out;
+    }
+}
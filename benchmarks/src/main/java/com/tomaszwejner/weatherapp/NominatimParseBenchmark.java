@@ -0,0 +1,45 @@
+package com.tomaszwejner.weatherapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsowanie odpowiedzi Nominatim (wyszukiwanie miasta i reverse geocode) z GeoCodingService.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NominatimParseBenchmark {
+
+    private String search;
+    private String reverse;
+
+    @Setup
+    public void setUp() {
+        search = BenchmarkFixtures.text("nominatim-search.json");
+        reverse = BenchmarkFixtures.text("nominatim-reverse.json");
+    }
+
+    @Benchmark
+    public Coordinates search() {
+        return GeoCodingService.parseSearchResponse(search);
+    }
+
+    @Benchmark
+    public String reverse() {
+        return GeoCodingService.parseReverseResponse(reverse);
+    }
+}
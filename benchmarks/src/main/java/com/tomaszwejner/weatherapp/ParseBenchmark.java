@@ -0,0 +1,45 @@
+package com.tomaszwejner.weatherapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsowanie odpowiedzi Open-Meteo dla trzech rodzajów zapytań WeatherService
+ * (aktualna pogoda, prognoza 16 dni, historia 30 dni).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    @Param({"openmeteo-current.json", "openmeteo-forecast-16d.json", "openmeteo-history-30d.json"})
+    public String fixture;
+
+    private byte[] openMeteo;
+
+    @Setup
+    public void setUp() {
+        openMeteo = BenchmarkFixtures.bytes(fixture);
+    }
+
+    @Benchmark
+    public HourlyWeather openMeteo() throws IOException {
+        return OpenMeteoParser.parse(new ByteArrayInputStream(openMeteo), BenchmarkFixtures.PARAMETERS).weather();
+    }
+}
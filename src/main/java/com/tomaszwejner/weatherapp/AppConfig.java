@@ -0,0 +1,71 @@
+package com.tomaszwejner.weatherapp;
+
+import java.time.Duration;
+
+/**
+ * Ustawienia aplikacji odczytywane z właściwości systemowych (-Dweatherapp.xxx=...)
+ * albo ze zmiennych środowiskowych (WEATHERAPP_XXX, kropki zamienione na podkreślenia).
+ * Gdy ustawienie nie jest podane, używana jest wartość domyślna.
+ */
+final class AppConfig {
+
+    private AppConfig() {
+    }
+
+    static String get(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = System.getenv(key.replace('.', '_').replace('-', '_').toUpperCase());
+        }
+        return value != null && !value.isBlank() ? value.trim() : defaultValue;
+    }
+
+    static int getInt(String key, int defaultValue) {
+        String value = get(key, null);
+        try {
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            System.err.println("Niepoprawna wartość " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    static long getLong(String key, long defaultValue) {
+        String value = get(key, null);
+        try {
+            return value != null ? Long.parseLong(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            System.err.println("Niepoprawna wartość " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    static double getDouble(String key, double defaultValue) {
+        String value = get(key, null);
+        try {
+            return value != null ? Double.parseDouble(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            System.err.println("Niepoprawna wartość " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    static boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key, null);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+
+    // Adres bazowy usługi (bez końcowego "/"), np. do podmiany API na lokalny serwer zastępczy
+    static String getBaseUrl(String key, String defaultValue) {
+        String value = get(key, defaultValue);
+        while (value.endsWith("/")) {
+            value = value.substring(0, value.length() - 1);
+        }
+        return value;
+    }
+
+    // Czas podawany w milisekundach
+    static Duration getMillis(String key, long defaultMillis) {
+        return Duration.ofMillis(getLong(key, defaultMillis));
+    }
+}
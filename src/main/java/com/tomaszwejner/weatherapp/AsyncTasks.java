@@ -0,0 +1,40 @@
+package com.tomaszwejner.weatherapp;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Wspólny wykonawca zadań asynchronicznych serwisów (jeden wątek wirtualny na zadanie).
+ * Anulowanie zwróconego CompletableFuture przerywa wątek wykonujący zadanie,
+ * dzięki czemu zapytanie HTTP, na które nikt już nie czeka, nie blokuje zasobów.
+ */
+final class AsyncTasks {
+
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private AsyncTasks() {
+    }
+
+    // Uruchamia zadanie na wątku wirtualnym i zwraca jego wynik jako CompletableFuture
+    static <T> CompletableFuture<T> supply(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Future<?> running = EXECUTOR.submit(() -> {
+            try {
+                future.complete(task.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+
+        // CompletableFuture.cancel nie przerywa wątku - robimy to sami
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                running.cancel(true);
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,133 @@
+package com.tomaszwejner.weatherapp;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Kanoniczne klucze cache dla zapytań pogodowych.
+ *
+ * Współrzędne są przyciągane do siatki modelu (domyślnie co 0.05°, ustawienie weatherapp.cache.gridDegrees;
+ * 0 wyłącza przyciąganie), więc punkty leżące w tej samej komórce siatki dzielą jeden wpis.
+ * Parametry są sortowane, pozbawiane duplikatów i zapisywane krótkimi kodami - kolejność
+ * zaznaczania checkboxów nie ma wpływu na klucz.
+ *
+ * Przykłady: current:1045:420:g0.05:t (zmienna bieżącej pogody),
+ * day:1045:420:g0.05:t:2024-06-13 (kubełek jednej zmiennej z jednego dnia prognozy / historii)
+ */
+final class CacheKeys {
+
+    static final double GRID_DEGREES = AppConfig.getDouble("weatherapp.cache.gridDegrees", 0.05);
+
+    private CacheKeys() {
+    }
+
+    /**
+     * Komórka siatki: indeksy szerokości i długości przy danej rozdzielczości.
+     * Przy rozdzielczości 0 komórką jest dokładny punkt.
+     */
+    record GridCell(long latIndex, long lonIndex, double resolution, double rawLatitude, double rawLongitude) {
+
+        // Szerokość geograficzna środka komórki (tę wartość wysyłamy do API)
+        double latitude() {
+            return resolution > 0 ? toDegrees(latIndex) : rawLatitude;
+        }
+
+        double longitude() {
+            return resolution > 0 ? toDegrees(lonIndex) : rawLongitude;
+        }
+
+        // Współrzędne w postaci tekstowej do adresu URL (bez artefaktów typu 52.250000000001)
+        String latitudeText() {
+            return resolution > 0 ? BigDecimal.valueOf(latIndex).multiply(BigDecimal.valueOf(resolution))
+                    .stripTrailingZeros().toPlainString() : String.valueOf(rawLatitude);
+        }
+
+        String longitudeText() {
+            return resolution > 0 ? BigDecimal.valueOf(lonIndex).multiply(BigDecimal.valueOf(resolution))
+                    .stripTrailingZeros().toPlainString() : String.valueOf(rawLongitude);
+        }
+
+        // Fragment klucza identyfikujący komórkę
+        String key() {
+            if (resolution > 0) {
+                return latIndex + ":" + lonIndex + ":g" + BigDecimal.valueOf(resolution).stripTrailingZeros().toPlainString();
+            }
+            return rawLatitude + ":" + rawLongitude + ":g0";
+        }
+
+        private double toDegrees(long index) {
+            return BigDecimal.valueOf(index).multiply(BigDecimal.valueOf(resolution)).doubleValue();
+        }
+    }
+
+    // Przyciąga współrzędne do siatki o domyślnej rozdzielczości
+    static GridCell snap(double latitude, double longitude) {
+        return snap(latitude, longitude, GRID_DEGREES);
+    }
+
+    static GridCell snap(double latitude, double longitude, double resolution) {
+        if (resolution <= 0) {
+            return new GridCell(0, 0, 0, latitude, longitude);
+        }
+        return new GridCell(Math.round(latitude / resolution), Math.round(longitude / resolution),
+                resolution, latitude, longitude);
+    }
+
+    // Zmienne godzinowe Open-Meteo obsługiwane przez aplikację (inne nazwy nie trafiają do API ani do kluczy)
+    static final Set<String> PARAMETERS = Set.of("temperature_2m", "relative_humidity_2m", "soil_temperature_0cm",
+            "windspeed_10m", "precipitation", "surface_pressure");
+
+    static boolean isKnownParameter(String param) {
+        return PARAMETERS.contains(param);
+    }
+
+    /**
+     * Posortowana lista parametrów bez duplikatów.
+     *
+     * @throws IllegalArgumentException dla nazwy spoza PARAMETERS
+     */
+    static List<String> canonicalParameters(List<String> parameters) {
+        for (String param : parameters) {
+            if (!isKnownParameter(param)) {
+                throw new IllegalArgumentException("Nieznana zmienna pogodowa: " + param);
+            }
+        }
+        return new ArrayList<>(new TreeSet<>(parameters));
+    }
+
+    /**
+     * Buduje klucz: prefiks, komórka siatki, posortowane kody parametrów i dodatkowe części (np. daty).
+     */
+    static String key(String prefix, GridCell cell, List<String> parameters, String... extra) {
+        StringBuilder key = new StringBuilder(64);
+        key.append(prefix).append(':').append(cell.key()).append(':');
+
+        // Kody sortujemy, żeby kolejność była stabilna niezależnie od nazw
+        TreeSet<String> codes = new TreeSet<>();
+        for (String param : parameters) {
+            codes.add(codeFor(param));
+        }
+        key.append(String.join(",", codes));
+
+        for (String s : extra) {
+            key.append(':').append(s);
+        }
+        return key.toString();
+    }
+
+    // Krótki kod parametru w kluczu (nieznane parametry zostają pod pełną nazwą)
+    static String codeFor(String param) {
+        return switch (param) {
+            case "temperature_2m" -> "t";
+            case "relative_humidity_2m" -> "rh";
+            case "soil_temperature_0cm" -> "st";
+            case "windspeed_10m" -> "w";
+            case "precipitation" -> "p";
+            case "surface_pressure" -> "sp";
+            default -> param;
+        };
+    }
+}
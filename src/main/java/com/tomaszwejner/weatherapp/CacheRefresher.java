@@ -0,0 +1,113 @@
+package com.tomaszwejner.weatherapp;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Miękkie wygasanie wpisów cache (stale-while-revalidate) i odświeżanie z wyprzedzeniem.
+ *
+ * Wpis jest zapisywany w cache na ttl + staleSeconds. Po ttl (miękkie wygaśnięcie) nadal jest zwracany
+ * od razu, a w tle rusza jedno odświeżenie. Wpis czytany często (co najmniej minReads odczytów od
+ * ostatniego odświeżenia) jest odświeżany już refreshAheadSeconds przed miękkim wygaśnięciem,
+ * więc popularne lokalizacje w ogóle nie trafiają na pusty cache.
+ *
+ * Na jeden klucz w tle działa najwyżej jedno odświeżenie. Odświeżenie wykonuje się przez SingleFlight
+ * serwisu, więc zapytanie użytkownika o ten sam brakujący wpis dołącza do niego zamiast pytać API drugi raz.
+ *
+ * Ustawienia (AppConfig):
+ *  weatherapp.cache.staleSeconds         - jak długo po ttl wpis może być zwracany (domyślnie 3600; 0 wyłącza)
+ *  weatherapp.cache.refreshAheadSeconds  - okno odświeżania przed ttl (domyślnie 300; 0 wyłącza)
+ *  weatherapp.cache.refreshAheadMinReads - ile odczytów czyni klucz "gorącym" (domyślnie 3)
+ */
+final class CacheRefresher {
+
+    // Górna granica liczby śledzonych kluczy - po jej przekroczeniu liczniki zaczynają od zera
+    private static final int MAX_TRACKED_KEYS = 10_000;
+
+    private final long staleMillis;
+    private final long refreshAheadMillis;
+    private final int minReads;
+
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, LongAdder> reads = new ConcurrentHashMap<>();
+
+    CacheRefresher(long staleMillis, long refreshAheadMillis, int minReads) {
+        this.staleMillis = staleMillis;
+        this.refreshAheadMillis = refreshAheadMillis;
+        this.minReads = minReads;
+    }
+
+    static CacheRefresher fromConfig() {
+        return new CacheRefresher(
+                AppConfig.getLong("weatherapp.cache.staleSeconds", 3600) * 1000,
+                AppConfig.getLong("weatherapp.cache.refreshAheadSeconds", 300) * 1000,
+                AppConfig.getInt("weatherapp.cache.refreshAheadMinReads", 3));
+    }
+
+    // TTL zapisu w cache: miękki TTL plus okres, w którym wpis można zwrócić jako przeterminowany
+    int storeTtlSeconds(int ttlSeconds) {
+        return (int) (ttlSeconds + staleMillis / 1000);
+    }
+
+    /**
+     * Rejestruje odczyt kompletu danych z cache i decyduje, czy trzeba je odświeżyć.
+     * Zwraca true tylko jednemu wołającemu - ten musi uruchomić refreshInBackground dla klucza.
+     *
+     * @param key             klucz zestawu danych (np. klucz SingleFlight)
+     * @param remainingMillis najmniejszy pozostały czas życia kluczy zestawu w cache (ujemny = bez wygasania)
+     */
+    boolean claim(String key, long remainingMillis) {
+        if (remainingMillis < 0) {
+            return false;
+        }
+        long softRemaining = remainingMillis - staleMillis;
+        long count = record(key);
+
+        String reason;
+        if (softRemaining <= 0) {
+            reason = "stale";
+        } else if (softRemaining <= refreshAheadMillis && count >= minReads) {
+            reason = "ahead";
+        } else {
+            return false;
+        }
+        if (!refreshing.add(key)) {
+            return false;
+        }
+        Metrics.increment("weatherapp_cache_refresh_total", "reason", reason);
+        return true;
+    }
+
+    /**
+     * Uruchamia odświeżenie na wątku wirtualnym; po jego zakończeniu zwalnia klucze zajęte przez claim.
+     * Błąd odświeżenia nie dociera do użytkownika - wpis zostaje w cache do twardego wygaśnięcia.
+     */
+    void refreshInBackground(List<String> keys, Callable<?> refresh) {
+        AsyncTasks.supply(() -> {
+            try {
+                return refresh.call();
+            } catch (Exception e) {
+                Metrics.increment("weatherapp_cache_refresh_errors_total");
+                System.err.println("Nie udało się odświeżyć danych w tle: " + e.getMessage());
+                return null;
+            } finally {
+                for (String key : keys) {
+                    refreshing.remove(key);
+                    reads.remove(key);
+                }
+            }
+        });
+    }
+
+    private long record(String key) {
+        if (reads.size() > MAX_TRACKED_KEYS) {
+            reads.clear();
+        }
+        LongAdder counter = reads.computeIfAbsent(key, k -> new LongAdder());
+        counter.increment();
+        return counter.sum();
+    }
+}
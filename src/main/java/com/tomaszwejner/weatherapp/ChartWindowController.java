@@ -1,19 +1,8 @@
 package com.tomaszwejner.weatherapp;
 
-import javafx.application.Platform;
 import javafx.fxml.FXML;
-import javafx.scene.chart.CategoryAxis;
-import javafx.scene.chart.LineChart;
-import javafx.scene.chart.NumberAxis;
-import javafx.scene.chart.XYChart;
-import javafx.scene.control.Alert;
 import javafx.scene.control.Label;
-import javafx.scene.control.Tooltip;
-import javafx.stage.FileChooser;
-import javafx.util.Duration;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
@@ -25,13 +14,7 @@ public class ChartWindowController {
 
     // Komponenty powiązane z FXML
     @FXML
-    private LineChart<String, Number> lineChart;  // główny wykres liniowy
-
-    @FXML
-    private CategoryAxis xAxis; // oś X - kategorie (daty)
-
-    @FXML
-    private NumberAxis yAxis;   // oś Y - wartości liczbowe
+    private TimeSeriesChart lineChart;  // główny wykres (oś czasu liczbowa, przybliżanie kółkiem myszy)
 
     @FXML
     private Label chartTitleLabel; // Label z tytułem wykresu
@@ -41,14 +24,13 @@ public class ChartWindowController {
     private String startDate;
     private String endDate;
 
-    // Tekst z wynikami do parsowania (np. temperatury)
-    private String resultText;
+    // Pełny wynik zapytania (wszystkie zmienne) - źródło eksportu
+    private HourlyWeather weather;
 
-    // Inicjalizacja kontrolera, ustawienie etykiet osi
+    // Inicjalizacja kontrolera, ustawienie opisu osi wartości
     @FXML
     public void initialize() {
-        xAxis.setLabel("Data");
-        yAxis.setLabel("Wartość");
+        lineChart.setValueLabel("Wartość", "°C");
     }
 
     /**
@@ -84,6 +66,11 @@ public class ChartWindowController {
         }
     }
 
+    // Ustawia pełny wynik zapytania eksportowany przyciskiem "Eksportuj dane"
+    public void setWeather(HourlyWeather weather) {
+        this.weather = weather;
+    }
+
     /**
      * Pomocnicza metoda do uproszczenia daty w tytule (np. usuwa godzinę).
      * @param input oryginalna data
@@ -99,121 +86,31 @@ public class ChartWindowController {
 
     /**
      * Dodaje serię danych do wykresu.
-     * Tworzy tooltipy dla każdego punktu wykresu z wartościami.
+     * Wartości pod kursorem pokazuje tooltip wykresu.
      * @param seriesName nazwa serii (np. "Temperatura")
-     * @param xValues lista wartości osi X (daty)
+     * @param epochHours godziny od epoki (oś X)
      * @param yValues lista wartości osi Y (np. temperatura)
      */
-    public void addSeries(String seriesName, List<String> xValues, List<Double> yValues) {
-        XYChart.Series<String, Number> series = new XYChart.Series<>();
-        series.setName(seriesName);
-
-        for (int i = 0; i < xValues.size() && i < yValues.size(); i++) {
-            XYChart.Data<String, Number> dataPoint = new XYChart.Data<>(xValues.get(i), yValues.get(i));
-            series.getData().add(dataPoint);
-        }
-
-        lineChart.getData().add(series);
-
-        // Dodanie tooltipów po renderowaniu węzłów JavaFX
-        Platform.runLater(() -> {
-            for (int i = 0; i < series.getData().size(); i++) {
-                XYChart.Data<String, Number> dataPoint = series.getData().get(i);
-                String x = xValues.get(i);
-                Double y = yValues.get(i);
-
-                Tooltip tooltip = new Tooltip(x + ", " + y + "°C");
-                tooltip.setShowDelay(Duration.millis(100));
-                Tooltip.install(dataPoint.getNode(), tooltip);
-            }
-        });
-    }
-
-    /**
-     * Ustawia surowy tekst z wynikami (np. z API) i uruchamia parsowanie do wykresu temperatur.
-     * @param text surowy tekst z danymi
-     */
-    public void setResultText(String text) {
-        this.resultText = text;
-        parseAndShowTempChart();
+    public void addSeries(String seriesName, long[] epochHours, List<Double> yValues) {
+        lineChart.addSeries(seriesName, epochHours, yValues);
     }
 
-    /**
-     * Parsuje resultText, wyciąga wartości temperatur i dodaje je do wykresu.
-     * Tu można rozbudować obsługę innych typów danych.
-     */
-    private void parseAndShowTempChart() {
-        // Czyszczenie istniejących danych
-        lineChart.getData().clear();
-
-        if (resultText == null || resultText.isEmpty()) return;
-
-        XYChart.Series<String, Number> series = new XYChart.Series<>();
-        series.setName("Temperatura [°C]");
-
-        String[] lines = resultText.split("\\r?\\n");
-        int index = 1;
-        for (String line : lines) {
-            line = line.trim();
-            if (line.startsWith("Temperatura")) {
-                String[] parts = line.split(":");
-                if (parts.length == 2) {
-                    try {
-                        double temp = Double.parseDouble(parts[1].trim());
-                        series.getData().add(new XYChart.Data<>("Punkt " + index, temp));
-                        index++;
-                    } catch (NumberFormatException e) {
-                        System.err.println("Niepoprawna wartość temperatury: " + parts[1]);
-                    }
-                }
-            }
-        }
-
-        lineChart.getData().add(series);
+    // Usuwa wszystkie serie (przed pokazaniem nowych danych w tym samym oknie)
+    public void clearSeries() {
+        lineChart.clear();
     }
 
     /**
-     * Handler przycisku eksportu danych do pliku tekstowego.
-     * Pozwala użytkownikowi wybrać lokalizację i zapisuje dane wykresu.
+     * Handler przycisku eksportu danych.
+     * Pozwala użytkownikowi wybrać plik i format, a zapisuje pełny wynik zapytania (ExportDialog).
      */
     @FXML
     private void onExportDataClicked() {
-        FileChooser fileChooser = new FileChooser();
-        fileChooser.setTitle("Zapisz dane wykresu");
-        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Plik tekstowy", "*.txt"));
-
-        // Nazwa pliku bazująca na danych wykresu
-        String defaultFileName = String.format("Temperature_%s_from_%s_to_%s.txt",
-                cityName != null ? cityName.replaceAll("\\s+", "_") : "unknown",
-                startDate != null ? startDate.replaceAll("\\s+", "_") : "start",
-                endDate != null ? endDate.replaceAll("\\s+", "_") : "end");
-        fileChooser.setInitialFileName(defaultFileName);
-
-        File file = fileChooser.showSaveDialog(lineChart.getScene().getWindow());
-        if (file != null) {
-            try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
-                writer.println("Miasto: " + (cityName != null ? cityName : "Nieznane"));
-                writer.println();
-                for (XYChart.Series<String, Number> series : lineChart.getData()) {
-                    writer.println("Seria: " + series.getName());
-                    writer.println("Czas;Wartość");
-                    for (XYChart.Data<String, Number> data : series.getData()) {
-                        Number value = data.getYValue();
-                        if (value != null && value.doubleValue() != 0.0) {
-                            writer.println(data.getXValue() + ";" + value);
-                        }
-                    }
-                    writer.println();
-                }
-
-                // Informacja o powodzeniu zapisu
-                Alert alert = new Alert(Alert.AlertType.INFORMATION, "Dane zostały wyeksportowane.");
-                alert.showAndWait();
-            } catch (IOException e) {
-                // Obsługa błędu zapisu - pokazanie alertu z komunikatem
-                Alert alert = new Alert(Alert.AlertType.ERROR, "Błąd podczas zapisu danych: " + e.getMessage());
-                alert.showAndWait();
-            }
-        }
+        // Domyślna nazwa pliku oparta na metadanych (miasto, daty)
+        String baseName = String.format("Temperature_%s_from_%s_to_%s",
+                cityName == null ? "Unknown" : cityName,
+                startDate == null ? "start" : startDate,
+                endDate == null ? "end" : endDate);
+        ExportDialog.show(lineChart.getScene().getWindow(), weather, baseName);
     }
 }
@@ -0,0 +1,86 @@
+package com.tomaszwejner.weatherapp;
+
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Okna wykresów wywoływane z okna głównego.
+ *
+ * Szablony FXML są wczytywane raz, w tle przy starcie aplikacji (parsowanie FXML i tworzenie
+ * kontrolera przez refleksję nie blokuje kliknięcia). Okno danego typu powstaje przy pierwszym
+ * otwarciu, a przy kolejnych jest pokazywane ponownie - kontroler dostaje tylko nowe dane.
+ *
+ * Używane wyłącznie z wątku FX (poza samym wczytywaniem szablonów).
+ */
+final class ChartWindows {
+
+    private static final String FXML_DIR = "/com/tomaszwejner/weatherapp/";
+
+    // Wczytany szablon: korzeń sceny i kontroler utworzony przez FXMLLoader
+    private record Template(Parent root, Object controller) {
+    }
+
+    private record Window(Stage stage, Object controller) {
+    }
+
+    private final Map<String, CompletableFuture<Template>> templates = new HashMap<>();
+    private final Map<String, Window> windows = new HashMap<>();
+
+    // Zaczyna wczytywać szablony w tle (nazwy plików FXML, np. "RainChart.fxml")
+    void preload(String... fxmlNames) {
+        for (String name : fxmlNames) {
+            templates.computeIfAbsent(name, n -> AsyncTasks.supply(() -> load(n)));
+        }
+    }
+
+    /**
+     * Pokazuje okno wykresu danego typu, tworząc je przy pierwszym wywołaniu.
+     *
+     * @param update ustawia dane w kontrolerze okna (nowym albo używanym ponownie)
+     */
+    @SuppressWarnings("unchecked")
+    <C> void show(String fxmlName, String title, Consumer<C> update) throws IOException {
+        Window window = windows.get(fxmlName);
+        if (window == null) {
+            Template template = template(fxmlName);
+            Stage stage = new Stage();
+            stage.setScene(new Scene(template.root()));
+            window = new Window(stage, template.controller());
+            windows.put(fxmlName, window);
+        }
+
+        update.accept((C) window.controller());
+        window.stage().setTitle(title);
+        window.stage().show();
+        window.stage().toFront();
+    }
+
+    // Szablon wczytany w tle (czeka, jeśli jeszcze się wczytuje) albo wczytany teraz
+    private Template template(String fxmlName) throws IOException {
+        CompletableFuture<Template> preloaded = templates.remove(fxmlName);
+        if (preloaded != null) {
+            try {
+                return preloaded.join();
+            } catch (CompletionException e) {
+                System.err.println("Nie udało się wczytać " + fxmlName + " w tle: " + e.getCause());
+            }
+        }
+        return load(fxmlName);
+    }
+
+    private static Template load(String fxmlName) throws IOException {
+        FXMLLoader loader = new FXMLLoader(ChartWindows.class.getResource(FXML_DIR + fxmlName));
+        loader.setClassLoader(ChartWindows.class.getClassLoader());
+        Parent root = loader.load();
+        return new Template(root, loader.getController());
+    }
+}
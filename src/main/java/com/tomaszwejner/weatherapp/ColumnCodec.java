@@ -0,0 +1,495 @@
+package com.tomaszwejner.weatherapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Zapis kolumn godzinowych do wartości w cache (każda zmienna pod osobnym kluczem).
+ *
+ * Kolumna (wersja 1, binarna): "~1" + Base64 z bajtów:
+ *  flagi (bajt: 1 = skompresowane Deflate, 2 = jest wartość aktualna, 4 = są braki danych),
+ *  liczba godzin (varint), wartość aktualna (double, jeśli jest),
+ *  dalej część, która może być skompresowana: mapa obecności (bit na godzinę, jeśli są braki)
+ *  i wartości obecnych godzin w jednym z kodowań:
+ *   1 - liczba miejsc po przecinku i różnice kolejnych wartości przeskalowanych do liczb całkowitych
+ *       (zig-zag varint) - dane Open-Meteo mają 1-2 miejsca, więc zwykle 1 bajt na godzinę,
+ *   2 - XOR kolejnych wartości double (jak w Gorilla) dla liczb, których nie da się tak zapisać.
+ * Deflate jest używany tylko wtedy, gdy faktycznie skraca wartość.
+ *
+ * Wersja 0 (tekst, wciąż odczytywana): "<liczba godzin>|<wartość aktualna>|v0,v1,v2,..." -
+ * puste pole oznacza brak danych (NaN). Ustawienie weatherapp.cache.binaryValues=false każe
+ * zapisywać wersję 0 (np. gdy ten sam Redis obsługuje jeszcze starsze wersje aplikacji).
+ *
+ * Oś czasu: "<pierwsza godzina>+<liczba godzin>" dla kolejnych godzin,
+ * w przeciwnym razie pełna lista godzin od epoki rozdzielona przecinkami.
+ */
+final class ColumnCodec {
+
+    private static final String BINARY_PREFIX = "~1";
+
+    private static final boolean WRITE_BINARY = AppConfig.getBoolean("weatherapp.cache.binaryValues", true);
+
+    private static final int FLAG_DEFLATED = 1;
+    private static final int FLAG_CURRENT = 2;
+    private static final int FLAG_MISSING = 4;
+
+    private static final int VALUES_SCALED = 1;
+    private static final int VALUES_XOR = 2;
+
+    // Największa liczba miejsc po przecinku sprawdzana dla kodowania przeskalowanego
+    private static final int MAX_DECIMALS = 4;
+
+    // Krótszych wartości nie opłaca się kompresować (nagłówek Deflate jest większy niż zysk)
+    private static final int MIN_DEFLATE_BYTES = 64;
+
+    private ColumnCodec() {
+    }
+
+    // Kolumna odczytana z cache: wartości godzinowe i wartość "aktualna" (NaN, gdy brak)
+    record CachedColumn(double[] values, double current) {
+    }
+
+    static String encodeColumn(double[] values, double current) {
+        return WRITE_BINARY ? encodeBinary(values, current) : encodeText(values, current);
+    }
+
+    static CachedColumn decodeColumn(String encoded) {
+        return encoded.startsWith(BINARY_PREFIX) ? decodeBinary(encoded) : decodeText(encoded);
+    }
+
+    static String encodeBinary(double[] values, double current) {
+        boolean missing = false;
+        for (double value : values) {
+            missing |= Double.isNaN(value);
+        }
+
+        // Część kompresowalna: mapa obecności i wartości
+        Bytes payload = new Bytes(values.length * 2 + 16);
+        if (missing) {
+            byte[] presence = new byte[(values.length + 7) / 8];
+            for (int i = 0; i < values.length; i++) {
+                if (!Double.isNaN(values[i])) {
+                    presence[i >> 3] |= (byte) (1 << (i & 7));
+                }
+            }
+            payload.write(presence);
+        }
+        int decimals = scaledDecimals(values);
+        try {
+            if (decimals >= 0) {
+                payload.writeByte(VALUES_SCALED);
+                payload.writeByte(decimals);
+                double scale = Math.pow(10, decimals);
+                long previous = 0;
+                for (double value : values) {
+                    if (!Double.isNaN(value)) {
+                        long scaled = Math.round(value * scale);
+                        writeVarLong(payload, scaled - previous);
+                        previous = scaled;
+                    }
+                }
+            } else {
+                payload.writeByte(VALUES_XOR);
+                writeXor(payload, values);
+            }
+        } catch (IOException e) {
+            // Zapis do pamięci nie zgłasza IOException
+            throw new RuntimeException(e);
+        }
+
+        byte[] body = payload.toByteArray();
+        int flags = (missing ? FLAG_MISSING : 0) | (Double.isNaN(current) ? 0 : FLAG_CURRENT);
+        if (body.length >= MIN_DEFLATE_BYTES) {
+            byte[] deflated = deflate(body);
+            if (deflated.length < body.length) {
+                body = deflated;
+                flags |= FLAG_DEFLATED;
+            }
+        }
+
+        Bytes out = new Bytes(body.length + 16);
+        try {
+            out.writeByte(flags);
+            writeVarLong(out, values.length);
+            if ((flags & FLAG_CURRENT) != 0) {
+                out.writeDouble(current);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        out.write(body);
+        return BINARY_PREFIX + Base64.getEncoder().withoutPadding().encodeToString(out.toByteArray());
+    }
+
+    private static CachedColumn decodeBinary(String encoded) {
+        ByteBuffer in = ByteBuffer.wrap(Base64.getDecoder().decode(encoded.substring(BINARY_PREFIX.length())));
+        int flags = in.get() & 0xFF;
+        int count = (int) readVarLong(in);
+        double current = (flags & FLAG_CURRENT) != 0 ? in.getDouble() : Double.NaN;
+
+        if ((flags & FLAG_DEFLATED) != 0) {
+            in = inflate(in);
+        }
+        byte[] presence = null;
+        if ((flags & FLAG_MISSING) != 0) {
+            presence = new byte[(count + 7) / 8];
+            in.get(presence);
+        }
+
+        double[] values = new double[count];
+        int encoding = in.get();
+        if (encoding == VALUES_SCALED) {
+            double scale = Math.pow(10, in.get());
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                if (presence != null && (presence[i >> 3] & (1 << (i & 7))) == 0) {
+                    values[i] = Double.NaN;
+                } else {
+                    previous += readVarLong(in);
+                    values[i] = previous / scale;
+                }
+            }
+        } else if (encoding == VALUES_XOR) {
+            readXor(in, values, presence);
+        } else {
+            throw new IllegalArgumentException("Nieznane kodowanie kolumny w cache: " + encoding);
+        }
+        return new CachedColumn(values, current);
+    }
+
+    static String encodeText(double[] values, double current) {
+        StringBuilder out = new StringBuilder(values.length * 6 + 16);
+        out.append(values.length).append('|');
+        appendValue(out, current);
+        out.append('|');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) out.append(',');
+            appendValue(out, values[i]);
+        }
+        return out.toString();
+    }
+
+    private static CachedColumn decodeText(String encoded) {
+        int countEnd = encoded.indexOf('|');
+        int currentEnd = encoded.indexOf('|', countEnd + 1);
+        int count = Integer.parseInt(encoded.substring(0, countEnd));
+        double current = parseValue(encoded, countEnd + 1, currentEnd);
+
+        double[] values = new double[count];
+        int start = currentEnd + 1;
+        for (int i = 0; i < count; i++) {
+            int end = encoded.indexOf(',', start);
+            if (end < 0) end = encoded.length();
+            values[i] = parseValue(encoded, start, end);
+            start = end + 1;
+        }
+        return new CachedColumn(values, current);
+    }
+
+    static String encodeTime(long[] epochHours) {
+        boolean contiguous = true;
+        for (int i = 1; i < epochHours.length && contiguous; i++) {
+            contiguous = epochHours[i] == epochHours[i - 1] + 1;
+        }
+        if (contiguous) {
+            return (epochHours.length > 0 ? epochHours[0] : 0) + "+" + epochHours.length;
+        }
+
+        StringBuilder out = new StringBuilder(epochHours.length * 7);
+        for (int i = 0; i < epochHours.length; i++) {
+            if (i > 0) out.append(',');
+            out.append(epochHours[i]);
+        }
+        return out.toString();
+    }
+
+    static long[] decodeTime(String encoded) {
+        int plus = encoded.indexOf('+');
+        if (plus >= 0) {
+            long first = Long.parseLong(encoded.substring(0, plus));
+            long[] hours = new long[Integer.parseInt(encoded.substring(plus + 1))];
+            for (int i = 0; i < hours.length; i++) {
+                hours[i] = first + i;
+            }
+            return hours;
+        }
+
+        String[] parts = encoded.split(",");
+        long[] hours = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            hours[i] = Long.parseLong(parts[i]);
+        }
+        return hours;
+    }
+
+    /**
+     * Najmniejsza liczba miejsc po przecinku, przy której wszystkie wartości (poza NaN) dają się
+     * zapisać jako liczby całkowite i odczytać z powrotem bit w bit; -1, gdy takiej nie ma.
+     */
+    static int scaledDecimals(double[] values) {
+        for (int decimals = 0; decimals <= MAX_DECIMALS; decimals++) {
+            double scale = Math.pow(10, decimals);
+            boolean exact = true;
+            for (double value : values) {
+                if (Double.isNaN(value)) {
+                    continue;
+                }
+                double scaled = value * scale;
+                if (Math.abs(scaled) > 1e15 || Math.round(scaled) / scale != value
+                        || Double.doubleToRawLongBits(value) == Double.doubleToRawLongBits(-0.0)) {
+                    exact = false;
+                    break;
+                }
+            }
+            if (exact) {
+                return decimals;
+            }
+        }
+        return -1;
+    }
+
+    // Liczba ze znakiem w kodowaniu zig-zag, po 7 bitów na bajt (najstarszy bit = "jest dalszy bajt")
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IOException("Uszkodzona liczba varint");
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.get() & 0xFF;
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IllegalArgumentException("Uszkodzona liczba varint w cache");
+    }
+
+    /**
+     * XOR kolejnych wartości: 0 = ta sama wartość; 10 = różnica mieści się w oknie bitów poprzedniej;
+     * 11 + 5 bitów zer wiodących + 6 bitów długości (-1) + bity znaczące.
+     */
+    private static void writeXor(Bytes out, double[] values) {
+        BitWriter bits = new BitWriter(out);
+        long previous = 0;
+        int leading = -1;
+        int trailing = 0;
+        boolean first = true;
+        for (double value : values) {
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            long current = Double.doubleToRawLongBits(value);
+            if (first) {
+                bits.write(current, 64);
+                first = false;
+            } else {
+                long xor = current ^ previous;
+                if (xor == 0) {
+                    bits.write(0, 1);
+                } else {
+                    int lead = Math.min(31, Long.numberOfLeadingZeros(xor));
+                    int trail = Long.numberOfTrailingZeros(xor);
+                    if (leading >= 0 && lead >= leading && trail >= trailing) {
+                        bits.write(0b10, 2);
+                        bits.write(xor >>> trailing, 64 - leading - trailing);
+                    } else {
+                        leading = lead;
+                        trailing = trail;
+                        int length = 64 - lead - trail;
+                        bits.write(0b11, 2);
+                        bits.write(lead, 5);
+                        bits.write(length - 1, 6);
+                        bits.write(xor >>> trail, length);
+                    }
+                }
+            }
+            previous = current;
+        }
+        bits.flush();
+    }
+
+    private static void readXor(ByteBuffer in, double[] values, byte[] presence) {
+        BitReader bits = new BitReader(in);
+        long previous = 0;
+        int leading = 0;
+        int trailing = 0;
+        boolean first = true;
+        for (int i = 0; i < values.length; i++) {
+            if (presence != null && (presence[i >> 3] & (1 << (i & 7))) == 0) {
+                values[i] = Double.NaN;
+                continue;
+            }
+            long current;
+            if (first) {
+                current = bits.read(64);
+                first = false;
+            } else if (bits.read(1) == 0) {
+                current = previous;
+            } else {
+                if (bits.read(1) == 1) {
+                    leading = (int) bits.read(5);
+                    int length = (int) bits.read(6) + 1;
+                    trailing = 64 - leading - length;
+                }
+                current = previous ^ (bits.read(64 - leading - trailing) << trailing);
+            }
+            values[i] = Double.longBitsToDouble(current);
+            previous = current;
+        }
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] buffer = new byte[data.length + 64];
+            int length = 0;
+            while (!deflater.finished() && length < buffer.length) {
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            // Nieskończona kompresja = wynik dłuższy niż dane - zostajemy przy danych
+            return deflater.finished() ? Arrays.copyOf(buffer, length) : data;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static ByteBuffer inflate(ByteBuffer in) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(in);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(in.remaining() * 4);
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Uszkodzona skompresowana wartość w cache");
+                }
+                out.write(buffer, 0, length);
+            }
+            return ByteBuffer.wrap(out.toByteArray());
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Uszkodzona skompresowana wartość w cache", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void appendValue(StringBuilder out, double value) {
+        if (!Double.isNaN(value)) {
+            out.append(value);
+        }
+    }
+
+    private static double parseValue(String encoded, int start, int end) {
+        return start >= end ? Double.NaN : Double.parseDouble(encoded.substring(start, end));
+    }
+
+    // Bufor bajtów z zapisem typów prostych (DataOutput bez IOException w praktyce)
+    private static final class Bytes extends DataOutputStream {
+
+        Bytes(int capacity) {
+            super(new ByteArrayOutputStream(capacity));
+        }
+
+        @Override
+        public void write(byte[] data) {
+            try {
+                super.write(data);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        byte[] toByteArray() {
+            return ((ByteArrayOutputStream) out).toByteArray();
+        }
+    }
+
+    // Zapis bitów od najstarszego; ostatni bajt dopełniany zerami
+    private static final class BitWriter {
+        private final Bytes out;
+        private long buffer;
+        private int used;
+
+        BitWriter(Bytes out) {
+            this.out = out;
+        }
+
+        void write(long value, int bits) {
+            for (int i = bits - 1; i >= 0; i--) {
+                buffer = (buffer << 1) | ((value >>> i) & 1);
+                if (++used == 8) {
+                    emit();
+                }
+            }
+        }
+
+        void flush() {
+            if (used > 0) {
+                buffer <<= 8 - used;
+                emit();
+            }
+        }
+
+        private void emit() {
+            try {
+                out.writeByte((int) buffer);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            buffer = 0;
+            used = 0;
+        }
+    }
+
+    private static final class BitReader {
+        private final ByteBuffer in;
+        private int current;
+        private int left;
+
+        BitReader(ByteBuffer in) {
+            this.in = in;
+        }
+
+        long read(int bits) {
+            long value = 0;
+            for (int i = 0; i < bits; i++) {
+                if (left == 0) {
+                    current = in.get() & 0xFF;
+                    left = 8;
+                }
+                value = (value << 1) | ((current >>> --left) & 1);
+            }
+            return value;
+        }
+    }
+}
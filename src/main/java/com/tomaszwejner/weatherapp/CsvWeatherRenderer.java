@@ -0,0 +1,57 @@
+package com.tomaszwejner.weatherapp;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * CSV (RFC 4180, separator ','): nagłówek "time,parametr1,parametr2,...", potem jeden wiersz
+ * na godzinę. Czas w formacie Open-Meteo ("2024-06-13T12:00", GMT), liczby z kropką
+ * dziesiętną w pełnej precyzji, brak wartości jako puste pole.
+ */
+public class CsvWeatherRenderer implements WeatherRenderer {
+
+    @Override
+    public void render(HourlyWeather weather, Appendable out) throws IOException {
+        List<String> parameters = weather.getParameters();
+        double[][] columns = new double[parameters.size()][];
+
+        RenderBuffer buffer = new RenderBuffer(out);
+        StringBuilder row = buffer.builder();
+
+        row.append("time");
+        for (int p = 0; p < columns.length; p++) {
+            columns[p] = weather.getColumn(parameters.get(p));
+            row.append(',');
+            appendField(row, parameters.get(p));
+        }
+        row.append("\r\n");
+
+        HourLabels labels = HourLabels.iso();
+        for (int i = 0; i < weather.size(); i++) {
+            labels.append(row, weather.getEpochHour(i));
+            for (double[] column : columns) {
+                row.append(',');
+                if (!Double.isNaN(column[i])) {
+                    RenderBuffer.appendNumber(row, column[i]);
+                }
+            }
+            row.append("\r\n");
+            buffer.endRow();
+        }
+        buffer.flush();
+    }
+
+    @Override
+    public String contentType() {
+        return "text/csv; charset=utf-8";
+    }
+
+    // Nazwy parametrów to zwykle identyfikatory, ale cudzysłów zakłada się, gdy jest potrzebny
+    private static void appendField(StringBuilder row, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            row.append(value);
+            return;
+        }
+        row.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
@@ -0,0 +1,67 @@
+package com.tomaszwejner.weatherapp;
+
+import javafx.application.Platform;
+import javafx.scene.control.Alert;
+import javafx.stage.FileChooser;
+import javafx.stage.Window;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Okno wyboru pliku i eksport pełnego wyniku (WeatherExport) z okien wykresów.
+ * Zapis działa w tle, więc eksport historii z wielu miesięcy nie blokuje interfejsu.
+ */
+final class ExportDialog {
+
+    private ExportDialog() {
+    }
+
+    /**
+     * @param baseName domyślna nazwa pliku bez rozszerzenia
+     */
+    static void show(Window owner, HourlyWeather weather, String baseName) {
+        if (weather == null || weather.isEmpty()) {
+            new Alert(Alert.AlertType.INFORMATION, "Brak danych do eksportu.").showAndWait();
+            return;
+        }
+
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Eksportuj dane");
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV", "*" + WeatherExport.Format.CSV.extension()),
+                new FileChooser.ExtensionFilter("CSV skompresowany (gzip)", "*" + WeatherExport.Format.CSV_GZIP.extension()),
+                new FileChooser.ExtensionFilter("Binarny kolumnowy", "*" + WeatherExport.Format.BINARY.extension()));
+        fileChooser.setInitialFileName(baseName.replaceAll("[\\s:/\\\\]+", "_") + WeatherExport.Format.CSV.extension());
+
+        File file = fileChooser.showSaveDialog(owner);
+        if (file == null) {
+            return;
+        }
+
+        // Bez pasującego rozszerzenia dopisujemy to z wybranego filtra
+        Path path = file.toPath();
+        if (WeatherExport.Format.forFileName(file.getName()) == null) {
+            String pattern = fileChooser.getSelectedExtensionFilter() != null
+                    ? fileChooser.getSelectedExtensionFilter().getExtensions().get(0)
+                    : "*" + WeatherExport.Format.CSV.extension();
+            path = path.resolveSibling(file.getName() + pattern.substring(1));
+        }
+
+        Path target = path;
+        AsyncTasks.supply(() -> Metrics.time("weather.export", () -> {
+            WeatherExport.export(weather, target);
+            return Files.size(target);
+        })).whenComplete((bytes, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                new Alert(Alert.AlertType.ERROR, "Błąd podczas zapisu danych: " + cause.getMessage()).showAndWait();
+            } else {
+                new Alert(Alert.AlertType.INFORMATION, "Dane zostały wyeksportowane ("
+                        + weather.size() + " godzin, " + weather.getParameters().size() + " zmiennych, "
+                        + bytes / 1024 + " KB).").showAndWait();
+            }
+        }));
+    }
+}
@@ -0,0 +1,421 @@
+package com.tomaszwejner.weatherapp;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Offline'owy słownik miejscowości do geokodowania bez sieci.
+ *
+ * Dane są trzymane w zwartym pliku mapowanym do pamięci (.gaz):
+ *  - nagłówek: magic, wersja, liczba miejsc, liczba kluczy nazw, przesunięcie tablicy napisów,
+ *  - miejsca (16 bajtów: lat, lon jako float, przesunięcie nazwy, populacja) ułożone jako
+ *    zrównoważone drzewo k-d (węzeł = środek zakresu), więc wyszukiwanie najbliższego miejsca
+ *    działa bezpośrednio na mapowanym pliku,
+ *  - indeks nazw (8 bajtów: przesunięcie klucza, numer miejsca) posortowany po znormalizowanej nazwie,
+ *  - tablica napisów UTF-8 (długość jako unsigned short + bajty).
+ *
+ * Plik powstaje z listy miejsc: formatu GeoNames (cities*.txt, kolumny rozdzielone tabulatorem)
+ * albo prostego CSV "nazwa,lat,lon[,populacja]". Import z linii poleceń:
+ * java com.tomaszwejner.weatherapp.Gazetteer import &lt;plik wejściowy&gt; &lt;plik.gaz&gt;
+ */
+public class Gazetteer {
+
+    private static final int MAGIC = 0x5747415A; // "WGAZ"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final int PLACE_BYTES = 16;
+    private static final int KEY_BYTES = 8;
+
+    // Przybliżona długość stopnia szerokości geograficznej w km
+    private static final double KM_PER_DEGREE = 111.2;
+
+    // Lista miejsc dołączona do aplikacji (największe miasta Polski)
+    private static final String BUNDLED_PLACES = "/com/tomaszwejner/weatherapp/gazetteer-pl.csv";
+
+    private final MappedByteBuffer buffer;
+    private final int placeCount;
+    private final int keyCount;
+    private final int placesOffset;
+    private final int keysOffset;
+    private final int stringsOffset;
+
+    // Miejsce odczytane z pliku
+    public record Place(String name, double latitude, double longitude, int population) {
+    }
+
+    private Gazetteer(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Nieobsługiwany format pliku słownika miejscowości");
+        }
+        this.placeCount = buffer.getInt(8);
+        this.keyCount = buffer.getInt(12);
+        long strings = buffer.getLong(16);
+        if (placeCount < 0 || keyCount < 0
+                || strings != HEADER_BYTES + (long) placeCount * PLACE_BYTES + (long) keyCount * KEY_BYTES
+                || strings > buffer.capacity()) {
+            throw new IOException("Uszkodzony plik słownika miejscowości (niezgodne rozmiary)");
+        }
+        this.placesOffset = HEADER_BYTES;
+        this.keysOffset = placesOffset + placeCount * PLACE_BYTES;
+        this.stringsOffset = (int) strings;
+        validate();
+    }
+
+    // Sprawdza odwołania do tablicy napisów i numery miejsc, żeby uszkodzony plik nie psuł wyszukiwania
+    private void validate() throws IOException {
+        for (int i = 0; i < placeCount; i++) {
+            checkString(buffer.getInt(placesOffset + i * PLACE_BYTES + 8));
+        }
+        for (int i = 0; i < keyCount; i++) {
+            int entry = keysOffset + i * KEY_BYTES;
+            checkString(buffer.getInt(entry));
+            int place = buffer.getInt(entry + 4);
+            if (place < 0 || place >= placeCount) {
+                throw new IOException("Uszkodzony plik słownika miejscowości (numer miejsca " + place + ")");
+            }
+        }
+    }
+
+    private void checkString(int relativeOffset) throws IOException {
+        long offset = (long) stringsOffset + relativeOffset;
+        if (relativeOffset < 0 || offset + 2 > buffer.capacity()
+                || offset + 2 + Short.toUnsignedInt(buffer.getShort((int) offset)) > buffer.capacity()) {
+            throw new IOException("Uszkodzony plik słownika miejscowości (napis poza plikiem)");
+        }
+    }
+
+    // Otwiera plik .gaz (mapowany tylko do odczytu)
+    public static Gazetteer open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new Gazetteer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Słownik wskazany w ustawieniu weatherapp.gazetteer.file; gdy go nie podano, używany jest
+     * plik zbudowany z listy dołączonej do aplikacji. Leży w katalogu użytkownika
+     * (~/.weatherapp/gazetteer), a jego nazwa zawiera skrót treści listy, więc zmiana listy
+     * oznacza nowy plik. Plik, który nie przejdzie sprawdzenia, jest budowany od nowa.
+     */
+    static Gazetteer fromConfig() throws IOException {
+        String configured = AppConfig.get("weatherapp.gazetteer.file", null);
+        if (configured != null) {
+            return open(Path.of(configured));
+        }
+
+        byte[] source;
+        try (InputStream in = Gazetteer.class.getResourceAsStream(BUNDLED_PLACES)) {
+            if (in == null) {
+                throw new IOException("Brak wbudowanej listy miejscowości");
+            }
+            source = in.readAllBytes();
+        }
+        Path dir = Path.of(System.getProperty("user.home"), ".weatherapp", "gazetteer");
+        Path bundled = dir.resolve("gazetteer-" + VERSION + "-" + contentHash(source) + ".gaz");
+        if (Files.exists(bundled)) {
+            try {
+                return open(bundled);
+            } catch (IOException e) {
+                System.err.println("Słownik miejscowości " + bundled + " jest uszkodzony, budowanie od nowa: " + e.getMessage());
+            }
+        }
+
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, "gazetteer", ".tmp");
+        try {
+            build(new ByteArrayInputStream(source), tmp);
+            Files.move(tmp, bundled, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return open(bundled);
+    }
+
+    // Pierwsze 8 bajtów SHA-256 treści jako tekst szesnastkowy
+    private static String contentHash(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data), 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public int size() {
+        return placeCount;
+    }
+
+    /**
+     * Wyszukiwanie po nazwie (znormalizowanej tak jak klucze cache geokodowania).
+     * Przy kilku miejscach o tej samej nazwie zwraca najludniejsze.
+     *
+     * @return miejsce albo null, gdy nazwy nie ma w słowniku
+     */
+    public Place find(String name) {
+        byte[] key = GeoCodingService.normalizeCityName(name).getBytes(StandardCharsets.UTF_8);
+
+        // Pierwszy klucz >= szukanego (wyszukiwanie binarne po posortowanym indeksie)
+        int lo = 0;
+        int hi = keyCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Arrays.compareUnsigned(readString(buffer.getInt(keysOffset + mid * KEY_BYTES)), key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+
+        int best = -1;
+        for (int i = lo; i < keyCount; i++) {
+            int entry = keysOffset + i * KEY_BYTES;
+            if (!Arrays.equals(readString(buffer.getInt(entry)), key)) {
+                break;
+            }
+            int place = buffer.getInt(entry + 4);
+            if (best < 0 || population(place) > population(best)) {
+                best = place;
+            }
+        }
+        return best >= 0 ? place(best) : null;
+    }
+
+    /**
+     * Najbliższe miejsce w promieniu maxDistanceKm (odległość liczona w przybliżeniu
+     * równoprostokątnym - wystarczającym dla nazw miejscowości).
+     *
+     * @return miejsce albo null, gdy w promieniu nic nie ma
+     */
+    public Place nearest(double latitude, double longitude, double maxDistanceKm) {
+        if (placeCount == 0) {
+            return null;
+        }
+        double cosLat = Math.cos(Math.toRadians(latitude));
+        double[] best = {Double.MAX_VALUE, -1}; // kwadrat odległości w stopniach, numer miejsca
+        searchNearest(0, placeCount, 0, latitude, longitude, cosLat, best);
+
+        double distanceKm = Math.sqrt(best[0]) * KM_PER_DEGREE;
+        return best[1] >= 0 && distanceKm <= maxDistanceKm ? place((int) best[1]) : null;
+    }
+
+    private void searchNearest(int lo, int hi, int depth, double lat, double lon, double cosLat, double[] best) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        int offset = placesOffset + mid * PLACE_BYTES;
+        double placeLat = buffer.getFloat(offset);
+        double placeLon = buffer.getFloat(offset + 4);
+
+        double dLat = lat - placeLat;
+        double dLon = (lon - placeLon) * cosLat;
+        double distance = dLat * dLat + dLon * dLon;
+        if (distance < best[0]) {
+            best[0] = distance;
+            best[1] = mid;
+        }
+
+        // Najpierw strona płaszczyzny podziału, po której leży punkt; drugą tylko gdy może być bliżej
+        double diff = depth % 2 == 0 ? dLat : dLon;
+        if (diff < 0) {
+            searchNearest(lo, mid, depth + 1, lat, lon, cosLat, best);
+            if (diff * diff < best[0]) searchNearest(mid + 1, hi, depth + 1, lat, lon, cosLat, best);
+        } else {
+            searchNearest(mid + 1, hi, depth + 1, lat, lon, cosLat, best);
+            if (diff * diff < best[0]) searchNearest(lo, mid, depth + 1, lat, lon, cosLat, best);
+        }
+    }
+
+    private Place place(int index) {
+        int offset = placesOffset + index * PLACE_BYTES;
+        return new Place(new String(readString(buffer.getInt(offset + 8)), StandardCharsets.UTF_8),
+                buffer.getFloat(offset), buffer.getFloat(offset + 4), buffer.getInt(offset + 12));
+    }
+
+    private int population(int index) {
+        return buffer.getInt(placesOffset + index * PLACE_BYTES + 12);
+    }
+
+    private byte[] readString(int relativeOffset) {
+        int offset = stringsOffset + relativeOffset;
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort(offset))];
+        buffer.get(offset + 2, bytes);
+        return bytes;
+    }
+
+    // ===== Budowanie pliku =====
+
+    // Miejsce w trakcie importu: nazwa wyświetlana, współrzędne, populacja i wszystkie klucze wyszukiwania
+    private record SourcePlace(String name, float latitude, float longitude, int population, Set<String> keys) {
+    }
+
+    /**
+     * Buduje plik .gaz z listy miejsc (GeoNames TSV albo CSV "nazwa,lat,lon[,populacja]").
+     */
+    public static void build(InputStream source, Path target) throws IOException {
+        List<SourcePlace> places = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(source, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                SourcePlace place = parseLine(line);
+                if (place != null) {
+                    places.add(place);
+                }
+            }
+        }
+
+        // Układ drzewa k-d: na każdym poziomie sortujemy zakres po szerokości albo długości
+        arrangeKdTree(places, 0, places.size(), 0);
+
+        // Tablica napisów: nazwy wyświetlane i klucze (bez powtórzeń)
+        ByteBuffer strings = ByteBuffer.allocate(1024);
+        Map<String, Integer> stringOffsets = new HashMap<>();
+        int[] nameOffsets = new int[places.size()];
+        List<int[]> keys = new ArrayList<>(); // {przesunięcie klucza, numer miejsca}
+        List<byte[]> keyBytes = new ArrayList<>();
+
+        for (int i = 0; i < places.size(); i++) {
+            SourcePlace place = places.get(i);
+            strings = ensureCapacity(strings, place.name());
+            nameOffsets[i] = intern(place.name(), stringOffsets, strings);
+            for (String key : place.keys()) {
+                strings = ensureCapacity(strings, key);
+                keys.add(new int[]{intern(key, stringOffsets, strings), i});
+                keyBytes.add(key.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        Integer[] order = new Integer[keys.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing((Integer i) -> keyBytes.get(i), Arrays::compareUnsigned));
+
+        long stringsOffset = HEADER_BYTES + (long) places.size() * PLACE_BYTES + (long) keys.size() * KEY_BYTES;
+        try (OutputStream file = Files.newOutputStream(target);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(places.size());
+            out.writeInt(keys.size());
+            out.writeLong(stringsOffset);
+
+            for (int i = 0; i < places.size(); i++) {
+                SourcePlace place = places.get(i);
+                out.writeFloat(place.latitude());
+                out.writeFloat(place.longitude());
+                out.writeInt(nameOffsets[i]);
+                out.writeInt(place.population());
+            }
+            for (Integer index : order) {
+                out.writeInt(keys.get(index)[0]);
+                out.writeInt(keys.get(index)[1]);
+            }
+            out.write(strings.array(), 0, strings.position());
+        }
+    }
+
+    private static SourcePlace parseLine(String line) {
+        if (line.isBlank() || line.startsWith("#")) {
+            return null;
+        }
+        try {
+            if (line.indexOf('\t') >= 0) {
+                // GeoNames: 0 id, 1 nazwa, 2 nazwa ASCII, 3 nazwy alternatywne, 4 lat, 5 lon, ..., 14 populacja
+                String[] f = line.split("\t", -1);
+                Set<String> keys = new LinkedHashSet<>();
+                keys.add(GeoCodingService.normalizeCityName(f[1]));
+                keys.add(GeoCodingService.normalizeCityName(f[2]));
+                for (String alternate : f[3].split(",")) {
+                    if (!alternate.isBlank()) keys.add(GeoCodingService.normalizeCityName(alternate));
+                }
+                int population = f.length > 14 && !f[14].isEmpty() ? (int) Math.min(Integer.MAX_VALUE, Long.parseLong(f[14])) : 0;
+                return new SourcePlace(f[1], Float.parseFloat(f[4]), Float.parseFloat(f[5]), population, keys);
+            }
+
+            String[] f = line.split(",");
+            Set<String> keys = new LinkedHashSet<>();
+            keys.add(GeoCodingService.normalizeCityName(f[0]));
+            int population = f.length > 3 ? Integer.parseInt(f[3].trim()) : 0;
+            return new SourcePlace(f[0].trim(), Float.parseFloat(f[1].trim()), Float.parseFloat(f[2].trim()), population, keys);
+        } catch (RuntimeException e) {
+            System.err.println("Pominięto niepoprawną linię słownika miejscowości: " + line);
+            return null;
+        }
+    }
+
+    private static void arrangeKdTree(List<SourcePlace> places, int lo, int hi, int depth) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        Comparator<SourcePlace> byAxis = depth % 2 == 0
+                ? Comparator.comparingDouble(SourcePlace::latitude)
+                : Comparator.comparingDouble(SourcePlace::longitude);
+        places.subList(lo, hi).sort(byAxis);
+        int mid = (lo + hi) >>> 1;
+        arrangeKdTree(places, lo, mid, depth + 1);
+        arrangeKdTree(places, mid + 1, hi, depth + 1);
+    }
+
+    private static int intern(String value, Map<String, Integer> offsets, ByteBuffer strings) {
+        Integer existing = offsets.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, 0xFFFF);
+        int offset = strings.position();
+        strings.putShort((short) length);
+        strings.put(bytes, 0, length);
+        offsets.put(value, offset);
+        return offset;
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer strings, String value) {
+        int needed = 2 + value.length() * 4;
+        if (strings.remaining() >= needed) {
+            return strings;
+        }
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(strings.capacity() * 2, strings.position() + needed));
+        bigger.put(strings.array(), 0, strings.position());
+        return bigger;
+    }
+
+    // Import listy miejsc z linii poleceń
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 || !args[0].equals("import")) {
+            System.err.println("Użycie: Gazetteer import <plik GeoNames .txt lub CSV> <plik wynikowy .gaz>");
+            System.exit(2);
+        }
+        try (InputStream in = Files.newInputStream(Path.of(args[1]))) {
+            build(in, Path.of(args[2]));
+        }
+        Gazetteer gazetteer = open(Path.of(args[2]));
+        System.out.println("Zapisano " + gazetteer.size() + " miejsc do " + args[2]);
+    }
+}
@@ -3,14 +3,78 @@ package com.tomaszwejner.weatherapp;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 
 // Klasa odpowiedzialna za geokodowanie i odwrotne geokodowanie z wykorzystaniem API Nominatim OpenStreetMap
 public class GeoCodingService {
 
+    // Adres Nominatim (weatherapp.nominatim.baseUrl)
+    private static final String NOMINATIM_URL =
+            AppConfig.getBaseUrl("weatherapp.nominatim.baseUrl", "https://nominatim.openstreetmap.org");
+
+    // Nominatim wymaga ustawienia User-Agent (możesz podać dane swojej aplikacji)
+    private static final String USER_AGENT = "TwojaAplikacjaPogodowa/1.0 (kontakt@twojadomena.pl)";
+
+    // Polityka Nominatim: najwyżej 1 zapytanie na sekundę z całej aplikacji (weatherapp.geo.requestsPerSecond)
+    private static final RateLimiter NOMINATIM_LIMITER =
+            new RateLimiter(AppConfig.getDouble("weatherapp.geo.requestsPerSecond", 1.0), 1);
+
+    // Wyniki geokodowania zmieniają się rzadko - domyślnie trzymamy je 30 dni
+    private static final int CACHE_TTL_SECONDS = AppConfig.getInt("weatherapp.geo.ttlSeconds", 30 * 24 * 3600);
+
+    // Brak wyników zapamiętujemy krócej, żeby literówki nie trafiały ciągle do Nominatim
+    private static final int NOT_FOUND_TTL_SECONDS = 24 * 3600;
+    private static final String NOT_FOUND = "?";
+
+    // Siatka dla kluczy odwrotnego geokodowania (domyślnie 0.01°, ok. 1 km)
+    private static final double REVERSE_GRID_DEGREES = AppConfig.getDouble("weatherapp.geo.reverseGridDegrees", 0.01);
+
+    // Największa odległość do miejscowości przy odwrotnym geokodowaniu offline (km)
+    private static final double OFFLINE_MAX_DISTANCE_KM = AppConfig.getDouble("weatherapp.gazetteer.maxDistanceKm", 25.0);
+
+    private final HttpTransport transport;
+    private final WeatherCache cache;
+
+    /**
+     * Słownik offline (Gazetteer) albo null. Tryb wybiera ustawienie weatherapp.geocoder:
+     *  online  - tylko Nominatim (domyślnie),
+     *  offline - tylko słownik, bez żadnych zapytań sieciowych,
+     *  auto    - wyszukiwanie po nazwie najpierw w słowniku, Nominatim gdy słownik nie zna nazwy;
+     *            odwrotne geokodowanie przez Nominatim, a słownik tylko wtedy, gdy Nominatim jest
+     *            niedostępny (najbliższe duże miasto to przybliżenie, więc nie trafia do cache).
+     */
+    private final Gazetteer gazetteer;
+    private final boolean offlineOnly;
+
+    // Limit czasu odpowiedzi Nominatim (weatherapp.http.nominatim.timeoutMs)
+    private final Duration timeout = AppConfig.getMillis("weatherapp.http.nominatim.timeoutMs", 10000);
+
+    public GeoCodingService() {
+        this(HttpTransport.shared(), WeatherCache.shared(), AppConfig.get("weatherapp.geocoder", "online"));
+    }
+
+    public GeoCodingService(HttpTransport transport, WeatherCache cache, String mode) {
+        this.transport = transport;
+        this.cache = cache;
+        this.offlineOnly = mode.equalsIgnoreCase("offline");
+
+        Gazetteer loaded = null;
+        if (offlineOnly || mode.equalsIgnoreCase("auto")) {
+            try {
+                loaded = Gazetteer.fromConfig();
+            } catch (Exception e) {
+                System.err.println("Nie udało się wczytać słownika miejscowości: " + e.getMessage());
+            }
+        }
+        this.gazetteer = loaded;
+    }
+
     /**
      * Metoda pobiera współrzędne geograficzne (latitude, longitude) na podstawie nazwy miasta.
      * Wykonuje zapytanie HTTP GET do Nominatim z parametrem formatu JSON i limit=1.
@@ -20,38 +84,54 @@ public class GeoCodingService {
      * @throws Exception w przypadku problemów z połączeniem lub braku wyników
      */
     public Coordinates getCoordinates(String city) throws Exception {
-        // Przygotowanie URL do zapytania (zamiana spacji na %20)
-        String urlStr = "https://nominatim.openstreetmap.org/search?q="
-                + city.replace(" ", "%20")
-                + "&format=json&limit=1";
-
-        URL url = new URL(urlStr);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
+        return Metrics.time("geo.search", () -> findCoordinates(city));
+    }
 
-        // Nominatim wymaga ustawienia User-Agent (możesz podać dane swojej aplikacji)
-        connection.setRequestProperty("User-Agent", "TwojaAplikacjaPogodowa/1.0 (kontakt@twojadomena.pl)");
+    private Coordinates findCoordinates(String city) throws Exception {
+        // Słownik offline - bez sieci i bez cache
+        if (gazetteer != null) {
+            Gazetteer.Place place = gazetteer.find(city);
+            if (place != null) {
+                return new Coordinates(place.latitude(), place.longitude());
+            }
+        }
+        if (offlineOnly) {
+            throw new NotFoundException("City not found");
+        }
 
-        int responseCode = connection.getResponseCode();
-        if (responseCode != 200) {
-            // Rzucamy wyjątek w przypadku błędnej odpowiedzi serwera HTTP
-            throw new RuntimeException("Failed to get geocode data: HTTP " + responseCode);
+        // Najpierw cache - klucz to znormalizowana nazwa ("  KRAKÓW " i "Kraków" trafiają w ten sam wpis)
+        String normalized = normalizeCityName(city);
+        String cacheKey = "geo:search:" + normalized;
+        String cached = cache.get(cacheKey);
+        if (cached != null) {
+            return parseCachedCoordinates(cached);
         }
 
-        // Czytanie odpowiedzi z serwera
-        BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-        String inputLine;
-        StringBuilder response = new StringBuilder();
-        while ((inputLine = in.readLine()) != null) {
-            response.append(inputLine);
+        // Przygotowanie URL do zapytania (kodowanie nazwy miasta)
+        String urlStr = NOMINATIM_URL + "/search?q="
+                + URLEncoder.encode(normalized, StandardCharsets.UTF_8)
+                + "&format=json&limit=1";
+
+        // Czytanie odpowiedzi z serwera (kod inny niż 200 kończy się wyjątkiem)
+        NOMINATIM_LIMITER.acquire();
+        String response = transport.getString("nominatim", urlStr, timeout, "User-Agent", USER_AGENT);
+
+        Coordinates coordinates = parseSearchResponse(response);
+        if (coordinates == null) {
+            // Brak wyników geokodowania - zapamiętujemy to i rzucamy wyjątek
+            cache.set(cacheKey, NOT_FOUND_TTL_SECONDS, NOT_FOUND);
+            throw new NotFoundException("City not found");
         }
-        in.close();
 
-        // Parsowanie odpowiedzi JSON - spodziewamy się tablicy wyników
-        JSONArray arr = new JSONArray(response.toString());
+        cache.set(cacheKey, CACHE_TTL_SECONDS, coordinates.latitude + "," + coordinates.longitude);
+        return coordinates;
+    }
+
+    // Parsuje odpowiedź wyszukiwania Nominatim (tablica wyników); null, gdy nic nie znaleziono
+    static Coordinates parseSearchResponse(String response) {
+        JSONArray arr = new JSONArray(response);
         if (arr.length() == 0) {
-            // Brak wyników geokodowania - rzucamy wyjątek
-            throw new RuntimeException("City not found");
+            return null;
         }
 
         JSONObject obj = arr.getJSONObject(0);
@@ -59,8 +139,6 @@ public class GeoCodingService {
         // Pobieramy szerokość i długość geograficzną jako double
         double lat = obj.getDouble("lat");
         double lon = obj.getDouble("lon");
-
-        // Zwracamy obiekt Coordinates z pobranymi wartościami
         return new Coordinates(lat, lon);
     }
 
@@ -74,34 +152,71 @@ public class GeoCodingService {
      * @throws Exception w przypadku błędów lub braku wyników
      */
     public String getCityName(double lat, double lon) throws Exception {
-        // Budujemy URL dla zapytania reverse geocode
-        String urlStr = "https://nominatim.openstreetmap.org/reverse?format=json&lat="
-                + lat + "&lon=" + lon + "&accept-language=pl";
+        return Metrics.time("geo.reverse", () -> findCityName(lat, lon));
+    }
 
-        URL url = new URL(urlStr);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
-        connection.setRequestProperty("User-Agent", "TwojaAplikacjaPogodowa/1.0 (kontakt@twojadomena.pl)");
+    private String findCityName(double lat, double lon) throws Exception {
+        if (offlineOnly) {
+            return nearestPlaceName(lat, lon);
+        }
 
-        int responseCode = connection.getResponseCode();
-        if (responseCode != 200) {
-            throw new RuntimeException("Failed to get reverse geocode data: HTTP " + responseCode);
+        // Punkty z tej samej komórki siatki (ok. 1 km) dzielą wynik
+        CacheKeys.GridCell cell = CacheKeys.snap(lat, lon, REVERSE_GRID_DEGREES);
+        String cacheKey = "geo:reverse:" + cell.key();
+        String cached = cache.get(cacheKey);
+        if (cached != null) {
+            if (cached.equals(NOT_FOUND)) {
+                throw new NotFoundException("No address found for coordinates");
+            }
+            return cached;
         }
 
-        // Odczyt odpowiedzi serwera
-        BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-        String inputLine;
-        StringBuilder response = new StringBuilder();
-        while ((inputLine = in.readLine()) != null) {
-            response.append(inputLine);
+        String name;
+        try {
+            name = fetchCityName(cell.latitudeText(), cell.longitudeText());
+        } catch (IOException e) {
+            if (gazetteer == null) {
+                throw e;
+            }
+            // Nominatim niedostępny - przybliżona nazwa ze słownika, bez zapisu do cache
+            System.err.println("Nominatim niedostępny (" + e + "), nazwa ze słownika offline");
+            return nearestPlaceName(lat, lon);
         }
-        in.close();
+        cache.set(cacheKey, name != null ? CACHE_TTL_SECONDS : NOT_FOUND_TTL_SECONDS, name != null ? name : NOT_FOUND);
+        if (name == null) {
+            // Brak informacji o adresie w odpowiedzi
+            throw new NotFoundException("No address found for coordinates");
+        }
+        return name;
+    }
+
+    // Najbliższa miejscowość ze słownika offline (drzewo k-d)
+    private String nearestPlaceName(double lat, double lon) {
+        Gazetteer.Place place = gazetteer != null ? gazetteer.nearest(lat, lon, OFFLINE_MAX_DISTANCE_KM) : null;
+        if (place == null) {
+            throw new NotFoundException("No address found for coordinates");
+        }
+        return place.name();
+    }
+
+    // Zapytanie reverse geocode do Nominatim; zwraca null, gdy odpowiedź nie zawiera adresu
+    private String fetchCityName(String lat, String lon) throws Exception {
+        // Budujemy URL dla zapytania reverse geocode
+        String urlStr = NOMINATIM_URL + "/reverse?format=json&lat="
+                + lat + "&lon=" + lon + "&accept-language=pl";
+
+        // Odczyt odpowiedzi serwera
+        NOMINATIM_LIMITER.acquire();
+        String response = transport.getString("nominatim", urlStr, timeout, "User-Agent", USER_AGENT);
+        return parseReverseResponse(response);
+    }
 
-        JSONObject obj = new JSONObject(response.toString());
+    // Parsuje odpowiedź reverse geocode Nominatim; null, gdy odpowiedź nie zawiera adresu
+    static String parseReverseResponse(String response) {
+        JSONObject obj = new JSONObject(response);
 
         if (!obj.has("address")) {
-            // Brak informacji o adresie w odpowiedzi
-            throw new RuntimeException("No address found for coordinates");
+            return null;
         }
 
         JSONObject address = obj.getJSONObject("address");
@@ -116,4 +231,37 @@ public class GeoCodingService {
         // Jeśli nic nie znaleźliśmy, zwracamy wartość domyślną
         return "Nieznana lokalizacja";
     }
+
+    // Normalizacja nazwy do klucza: postać NFKC, małe litery, pojedyncze spacje
+    static String normalizeCityName(String city) {
+        String normalized = Normalizer.normalize(city, Normalizer.Form.NFKC);
+        return normalized.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static Coordinates parseCachedCoordinates(String cached) {
+        if (cached.equals(NOT_FOUND)) {
+            throw new NotFoundException("City not found");
+        }
+        int comma = cached.indexOf(',');
+        return new Coordinates(Double.parseDouble(cached.substring(0, comma)), Double.parseDouble(cached.substring(comma + 1)));
+    }
+
+    // Wersja asynchroniczna getCoordinates (wątek wirtualny, anulowanie przerywa zapytanie)
+    public CompletableFuture<Coordinates> getCoordinatesAsync(String city) {
+        return AsyncTasks.supply(() -> getCoordinates(city));
+    }
+
+    // Wersja asynchroniczna getCityName (wątek wirtualny, anulowanie przerywa zapytanie)
+    public CompletableFuture<String> getCityNameAsync(double lat, double lon) {
+        return AsyncTasks.supply(() -> getCityName(lat, lon));
+    }
+
+    // Wyjątek dla zapytania bez wyniku (nieznana nazwa albo brak adresu dla współrzędnych)
+    public static class NotFoundException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public NotFoundException(String message) {
+            super(message);
+        }
+    }
 }
@@ -24,6 +24,9 @@ public class HelloApplication extends Application {
     }
 
     public static void main(String[] args) {
+        // Opcjonalny endpoint /metrics (weatherapp.metrics.port)
+        Metrics.startHttpEndpointFromConfig();
+
         // Uruchamia aplikację JavaFX (wywołuje start())
         launch();
     }
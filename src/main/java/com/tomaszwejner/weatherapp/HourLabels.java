@@ -0,0 +1,69 @@
+package com.tomaszwejner.weatherapp;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Etykiety godzin z osi czasu HourlyWeather. Część z datą jest formatowana raz na dobę
+ * (formatter jest kompilowany raz), godzina pochodzi z gotowej tablicy "00:00".."23:00".
+ * Obiekt pamięta ostatnią dobę, więc nie jest bezpieczny wątkowo - jeden na pętlę.
+ */
+final class HourLabels {
+
+    // "13 czerwca" + " 12:00" - tak jak w oknie aplikacji
+    private static final DateTimeFormatter DISPLAY_DAY = DateTimeFormatter.ofPattern("d MMMM", Locale.of("pl"));
+
+    private static final String[] HOURS = new String[24];
+
+    static {
+        for (int h = 0; h < 24; h++) {
+            HOURS[h] = (h < 10 ? "0" : "") + h + ":00";
+        }
+    }
+
+    private final DateTimeFormatter dayFormatter;
+    private final String separator;
+
+    private long day = Long.MIN_VALUE;
+    private String dayPrefix;
+
+    private HourLabels(DateTimeFormatter dayFormatter, String separator) {
+        this.dayFormatter = dayFormatter;
+        this.separator = separator;
+    }
+
+    // Format wyświetlany użytkownikowi: "13 czerwca 12:00"
+    static HourLabels display() {
+        return new HourLabels(DISPLAY_DAY, " ");
+    }
+
+    // Format Open-Meteo / ISO-8601 bez sekund: "2024-06-13T12:00"
+    static HourLabels iso() {
+        return new HourLabels(DateTimeFormatter.ISO_LOCAL_DATE, "T");
+    }
+
+    String format(long epochHour) {
+        return prefix(epochHour) + HOURS[Math.floorMod(epochHour, 24)];
+    }
+
+    // Sama data bez godziny, np. "13 czerwca"
+    String formatDay(long epochHour) {
+        String prefix = prefix(epochHour);
+        return prefix.substring(0, prefix.length() - separator.length());
+    }
+
+    void append(Appendable out, long epochHour) throws IOException {
+        out.append(prefix(epochHour)).append(HOURS[Math.floorMod(epochHour, 24)]);
+    }
+
+    private String prefix(long epochHour) {
+        long hourDay = Math.floorDiv(epochHour, 24);
+        if (hourDay != day) {
+            day = hourDay;
+            dayPrefix = LocalDate.ofEpochDay(hourDay).format(dayFormatter) + separator;
+        }
+        return dayPrefix;
+    }
+}
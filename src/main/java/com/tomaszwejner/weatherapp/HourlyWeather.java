@@ -0,0 +1,119 @@
+package com.tomaszwejner.weatherapp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typowany wynik zapytania pogodowego w układzie kolumnowym.
+ * Wszystkie parametry dzielą jedną oś czasu (godziny od epoki, UTC),
+ * a każdy parametr ma własną tablicę double[] o tej samej długości.
+ * Brakujące wartości (null w odpowiedzi API) są zapisywane jako NaN.
+ */
+public class HourlyWeather {
+
+    private final double latitude;
+    private final double longitude;
+
+    // Oś czasu: liczba godzin od 1970-01-01T00:00 UTC
+    private final long[] epochHours;
+
+    // Kolumny godzinowe w kolejności parametrów z zapytania
+    private final Map<String, double[]> columns;
+
+    // Wartości "aktualne" (tylko dla zapytania o bieżącą pogodę), NaN gdy brak
+    private final Map<String, Double> current;
+
+    // Czy wynik pochodzi z cache (nie jest zapisywane w cache)
+    private boolean fromCache;
+
+    public HourlyWeather(double latitude, double longitude, long[] epochHours,
+                         Map<String, double[]> columns, Map<String, Double> current) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.epochHours = epochHours;
+        this.columns = columns;
+        this.current = current;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    // Liczba godzin w wyniku
+    public int size() {
+        return epochHours.length;
+    }
+
+    public boolean isEmpty() {
+        return epochHours.length == 0;
+    }
+
+    public long getEpochHour(int index) {
+        return epochHours[index];
+    }
+
+    public long[] getEpochHours() {
+        return epochHours;
+    }
+
+    // Lista parametrów, dla których mamy kolumny
+    public List<String> getParameters() {
+        return new ArrayList<>(columns.keySet());
+    }
+
+    public boolean hasColumn(String param) {
+        return columns.containsKey(param);
+    }
+
+    // Zwraca kolumnę dla parametru albo null, gdy parametr nie był pobrany
+    public double[] getColumn(String param) {
+        return columns.get(param);
+    }
+
+    public boolean hasCurrent(String param) {
+        Double value = current.get(param);
+        return value != null && !Double.isNaN(value);
+    }
+
+    // Zwraca aktualną wartość parametru albo NaN
+    public double getCurrent(String param) {
+        Double value = current.get(param);
+        return value != null ? value : Double.NaN;
+    }
+
+    public Map<String, Double> getCurrentValues() {
+        return Collections.unmodifiableMap(current);
+    }
+
+    public boolean isFromCache() {
+        return fromCache;
+    }
+
+    public void setFromCache(boolean fromCache) {
+        this.fromCache = fromCache;
+    }
+
+    /**
+     * Zwraca wynik z kolumnami w kolejności podanych parametrów (pomija parametry bez kolumny).
+     * Oś czasu i tablice są współdzielone - nic nie jest kopiowane.
+     */
+    public HourlyWeather select(List<String> parameters) {
+        Map<String, double[]> selected = new LinkedHashMap<>();
+        for (String param : parameters) {
+            double[] column = columns.get(param);
+            if (column != null) {
+                selected.put(param, column);
+            }
+        }
+        HourlyWeather result = new HourlyWeather(latitude, longitude, epochHours, selected, current);
+        result.fromCache = fromCache;
+        return result;
+    }
+}
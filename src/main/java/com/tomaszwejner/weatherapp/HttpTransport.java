@@ -0,0 +1,235 @@
+package com.tomaszwejner.weatherapp;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Wspólny transport HTTP dla WeatherService i GeoCodingService.
+ * Jeden HttpClient utrzymuje pulę połączeń (keep-alive), negocjuje HTTP/2 tam,
+ * gdzie serwer go obsługuje, i prosi o odpowiedzi skompresowane gzipem,
+ * które są rozpakowywane strumieniowo podczas czytania.
+ * Limit czasu zapytania obejmuje całą wymianę, razem z odbiorem treści: treść nie jest buforowana,
+ * a strumień, którego nie odczytano do końca w limicie, jest zamykany przez wątek pilnujący.
+ *
+ * Ustawienia:
+ *  weatherapp.http.connectTimeoutMs - limit czasu nawiązania połączenia (domyślnie 5000)
+ */
+public class HttpTransport {
+
+    private static final HttpTransport SHARED = new HttpTransport(
+            AppConfig.getMillis("weatherapp.http.connectTimeoutMs", 5000));
+
+    // Zamyka strumienie odpowiedzi, których treść nie spłynęła w limicie czasu zapytania
+    private static final ScheduledExecutorService DEADLINES = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "weatherapp-http-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final HttpClient client;
+
+    public HttpTransport(Duration connectTimeout) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(connectTimeout)
+                .build();
+    }
+
+    // Transport współdzielony przez wszystkie serwisy w procesie
+    public static HttpTransport shared() {
+        return SHARED;
+    }
+
+    /**
+     * Wykonuje zapytanie GET i zwraca strumień treści odpowiedzi (już rozpakowany).
+     * Strumień trzeba zamknąć po odczycie, żeby połączenie wróciło do puli.
+     * Limit czasu obejmuje całe zapytanie: po jego upływie strumień jest zamykany, a trwający
+     * albo kolejny odczyt kończy się HttpTimeoutException - także przy zatrzymanej w połowie treści.
+     * Czas zapytania (razem z odczytem treści), kod odpowiedzi i liczba bajtów trafiają do Metrics.
+     *
+     * @param upstream nazwa usługi w metrykach (np. "open-meteo")
+     * @param url      adres zapytania
+     * @param timeout  limit czasu na całe zapytanie (nagłówki i treść)
+     * @param headers  pary nazwa/wartość dodatkowych nagłówków
+     * @throws HttpStatusException   gdy serwer zwróci kod inny niż 200
+     * @throws HttpTimeoutException gdy nagłówki odpowiedzi nie nadejdą w limicie czasu
+     */
+    public InputStream get(String upstream, String url, Duration timeout, String... headers) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(timeout)
+                .header("Accept-Encoding", "gzip")
+                .GET();
+        for (int i = 0; i + 1 < headers.length; i += 2) {
+            request.header(headers[i], headers[i + 1]);
+        }
+
+        long start = System.nanoTime();
+        HttpResponse<InputStream> response;
+        try {
+            response = await(client.sendAsync(request.build(), HttpResponse.BodyHandlers.ofInputStream()), timeout, url);
+        } catch (IOException e) {
+            Metrics.increment("weatherapp_upstream_responses_total", "upstream", upstream, "status", "error");
+            Metrics.recordLatency("weatherapp_upstream_duration_seconds", System.nanoTime() - start, "upstream", upstream);
+            throw e;
+        }
+        Metrics.increment("weatherapp_upstream_responses_total", "upstream", upstream,
+                "status", String.valueOf(response.statusCode()));
+
+        long remainingNanos = timeout.toNanos() - (System.nanoTime() - start);
+        InputStream body = new MeteredInputStream(response.body(), upstream, start, remainingNanos, timeout, url);
+        if (response.statusCode() != 200) {
+            body.close();
+            throw new HttpStatusException(response.statusCode(), url);
+        }
+
+        boolean gzip = response.headers().firstValue("Content-Encoding")
+                .map(encoding -> encoding.equalsIgnoreCase("gzip"))
+                .orElse(false);
+        return gzip ? new GZIPInputStream(body, 8192) : body;
+    }
+
+    // Wersja pomocnicza: zwraca całą odpowiedź jako tekst UTF-8
+    public String getString(String upstream, String url, Duration timeout, String... headers) throws IOException, InterruptedException {
+        try (InputStream in = get(upstream, url, timeout, headers)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Strumień treści odpowiedzi: liczy bajty odebrane z sieci (przed rozpakowaniem), a przy zamknięciu
+     * zapisuje ich liczbę i całkowity czas zapytania - tak widać też powoli spływające odpowiedzi.
+     * Po upływie limitu czasu wątek pilnujący zamyka strumień HTTP, co odblokowuje trwający odczyt.
+     */
+    private static final class MeteredInputStream extends FilterInputStream {
+        private final String upstream;
+        private final long start;
+        private final Duration timeout;
+        private final String url;
+        private final ScheduledFuture<?> deadline;
+        private volatile boolean expired;
+        private long bytes;
+        private boolean closed;
+
+        MeteredInputStream(InputStream in, String upstream, long start, long remainingNanos, Duration timeout, String url) {
+            super(in);
+            this.upstream = upstream;
+            this.start = start;
+            this.timeout = timeout;
+            this.url = url;
+            this.deadline = DEADLINES.schedule(this::expire, Math.max(0, remainingNanos), TimeUnit.NANOSECONDS);
+        }
+
+        private void expire() {
+            expired = true;
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Strumień i tak jest porzucany - odczyt zgłosi przekroczenie limitu
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                checkDeadline();
+                int b = super.read();
+                if (b >= 0) bytes++;
+                return b;
+            } catch (IOException e) {
+                throw timeoutOr(e);
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            try {
+                checkDeadline();
+                int n = super.read(buffer, offset, length);
+                if (n > 0) bytes += n;
+                return n;
+            } catch (IOException e) {
+                throw timeoutOr(e);
+            }
+        }
+
+        private void checkDeadline() throws HttpTimeoutException {
+            if (expired) {
+                throw new HttpTimeoutException("Przekroczony limit czasu " + timeout.toMillis() + " ms podczas odbioru treści z " + url);
+            }
+        }
+
+        // Błąd odczytu po zamknięciu przez wątek pilnujący to przekroczenie limitu, nie awaria sieci
+        private IOException timeoutOr(IOException e) {
+            if (expired && !(e instanceof HttpTimeoutException)) {
+                HttpTimeoutException timeoutException = new HttpTimeoutException(
+                        "Przekroczony limit czasu " + timeout.toMillis() + " ms podczas odbioru treści z " + url);
+                timeoutException.initCause(e);
+                return timeoutException;
+            }
+            return e;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                deadline.cancel(false);
+                Metrics.add("weatherapp_upstream_bytes_total", bytes, "upstream", upstream);
+                Metrics.recordLatency("weatherapp_upstream_duration_seconds", System.nanoTime() - start, "upstream", upstream);
+            }
+            super.close();
+        }
+    }
+
+    // Czeka na odpowiedź najwyżej timeout; po przekroczeniu (albo przerwaniu wątku) przerywa zapytanie
+    private static <T> HttpResponse<T> await(CompletableFuture<HttpResponse<T>> future, Duration timeout, String url)
+            throws IOException, InterruptedException {
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new HttpTimeoutException("Przekroczony limit czasu " + timeout.toMillis() + " ms dla " + url);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // Wyjątek dla odpowiedzi z kodem innym niż 200
+    public static class HttpStatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final int statusCode;
+
+        public HttpStatusException(int statusCode, String url) {
+            super("HTTP " + statusCode + " dla " + url);
+            this.statusCode = statusCode;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.tomaszwejner.weatherapp;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * JSON w układzie kolumnowym:
+ * {"latitude":..,"longitude":..,"fromCache":..,"current":{..},"time":[..],"hourly":{"param":[..]}}
+ * Czas w formacie Open-Meteo ("2024-06-13T12:00"), brakujące wartości jako null.
+ * Obiekt "current" pojawia się tylko dla zapytań o bieżącą pogodę.
+ */
+public class JsonWeatherRenderer implements WeatherRenderer {
+
+    @Override
+    public void render(HourlyWeather weather, Appendable out) throws IOException {
+        List<String> parameters = weather.getParameters();
+        RenderBuffer buffer = new RenderBuffer(out);
+        StringBuilder json = buffer.builder();
+
+        json.append("{\"latitude\":");
+        appendNumber(json, weather.getLatitude());
+        json.append(",\"longitude\":");
+        appendNumber(json, weather.getLongitude());
+        json.append(",\"fromCache\":").append(weather.isFromCache());
+
+        if (!weather.getCurrentValues().isEmpty()) {
+            json.append(",\"current\":{");
+            boolean first = true;
+            for (String param : parameters) {
+                if (weather.hasCurrent(param)) {
+                    if (!first) json.append(',');
+                    first = false;
+                    appendString(json, param);
+                    json.append(':');
+                    appendNumber(json, weather.getCurrent(param));
+                }
+            }
+            json.append('}');
+        }
+
+        json.append(",\"time\":[");
+        HourLabels labels = HourLabels.iso();
+        for (int i = 0; i < weather.size(); i++) {
+            if (i > 0) json.append(',');
+            json.append('"');
+            labels.append(json, weather.getEpochHour(i));
+            json.append('"');
+            buffer.endRow();
+        }
+        json.append("],\"hourly\":{");
+
+        for (int p = 0; p < parameters.size(); p++) {
+            if (p > 0) json.append(',');
+            appendString(json, parameters.get(p));
+            json.append(":[");
+            double[] column = weather.getColumn(parameters.get(p));
+            for (int i = 0; i < column.length; i++) {
+                if (i > 0) json.append(',');
+                appendNumber(json, column[i]);
+                buffer.endRow();
+            }
+            json.append(']');
+        }
+        json.append("}}");
+        buffer.flush();
+    }
+
+    @Override
+    public String contentType() {
+        return "application/json; charset=utf-8";
+    }
+
+    // NaN i nieskończoności nie istnieją w JSON - zapisujemy null
+    private static void appendNumber(StringBuilder json, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            json.append("null");
+        } else {
+            RenderBuffer.appendNumber(json, value);
+        }
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,91 @@
+package com.tomaszwejner.weatherapp;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache w pamięci procesu (warstwa L1) sprawdzany przed Redisem.
+ * Ograniczony liczbą wpisów i szacowanym rozmiarem w bajtach; po przekroczeniu limitu
+ * usuwane są najdawniej używane wpisy (LRU). Każdy wpis ma własny czas życia,
+ * odpowiadający TTL tego samego klucza w Redisie.
+ */
+public class LocalCache {
+
+    // Szacunkowy narzut na wpis (obiekty Entry, węzeł mapy, nagłówki String)
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final int maxEntries;
+    private final long maxBytes;
+
+    // accessOrder = true: iteracja zaczyna się od najdawniej używanego wpisu
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    private record Entry(String value, long expiresAt, long size) {
+    }
+
+    public LocalCache(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    // Zwraca wartość albo null, gdy wpisu nie ma lub wygasł
+    public String get(String key) {
+        RedisCache.TimedValue timed = getWithTtl(key);
+        return timed != null ? timed.value() : null;
+    }
+
+    // Jak get, ale razem z pozostałym czasem życia wpisu
+    public synchronized RedisCache.TimedValue getWithTtl(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        long remaining = entry.expiresAt() - System.currentTimeMillis();
+        if (remaining <= 0) {
+            remove(key);
+            return null;
+        }
+        return new RedisCache.TimedValue(entry.value(), remaining);
+    }
+
+    // Zapisuje wartość z czasem życia w milisekundach
+    public synchronized void put(String key, String value, long ttlMillis) {
+        if (maxEntries <= 0 || ttlMillis <= 0) {
+            return;
+        }
+        long size = ENTRY_OVERHEAD_BYTES + 2L * (key.length() + value.length());
+        if (size > maxBytes) {
+            return; // pojedynczy wpis większy niż cały cache - nie przechowujemy
+        }
+        remove(key);
+        entries.put(key, new Entry(value, System.currentTimeMillis() + ttlMillis, size));
+        bytes += size;
+        evict();
+    }
+
+    public synchronized void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            bytes -= removed.size();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long sizeInBytes() {
+        return bytes;
+    }
+
+    // Usuwa najdawniej używane wpisy, dopóki nie zmieścimy się w limitach
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && it.hasNext()) {
+            bytes -= it.next().getValue().size();
+            it.remove();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.tomaszwejner.weatherapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metryki aplikacji: liczniki i histogramy czasów, dostępne przez JMX (MetricsMXBean)
+ * i w formacie tekstowym Prometheusa (endpoint /metrics w WeatherServer albo osobny
+ * serwer włączany ustawieniem weatherapp.metrics.port).
+ *
+ * Serie:
+ *  weatherapp_operation_duration_seconds{operation}    - czas operacji serwisów (p50/p95/p99)
+ *  weatherapp_operation_errors_total{operation}        - operacje zakończone wyjątkiem
+ *  weatherapp_cache_requests_total{tier,prefix,result} - odczyty cache: l1/l2, current/day/geo,
+ *                                                        hit/miss/error/bypass
+ *  weatherapp_cache_refresh_total{reason}              - odświeżenia w tle: stale (po TTL) / ahead (gorący klucz przed TTL)
+ *  weatherapp_cache_refresh_errors_total               - nieudane odświeżenia w tle
+ *  weatherapp_cache_decode_errors_total{prefix}        - wartości z cache, których nie dało się zdekodować
+ *  weatherapp_upstream_duration_seconds{upstream}      - czas zapytań do Open-Meteo / Nominatim (z odczytem treści)
+ *  weatherapp_upstream_responses_total{upstream,status} - kody odpowiedzi ("error" = brak odpowiedzi)
+ *  weatherapp_upstream_bytes_total{upstream}           - bajty odebrane (przed rozpakowaniem gzip)
+ */
+public final class Metrics {
+
+    private static final Map<String, String> HELP = Map.of(
+            "weatherapp_operation_duration_seconds", "Czas operacji serwisów pogodowych i geokodowania",
+            "weatherapp_operation_errors_total", "Operacje zakończone wyjątkiem",
+            "weatherapp_cache_requests_total", "Odczyty cache według warstwy, prefiksu klucza i wyniku",
+            "weatherapp_cache_refresh_total", "Odświeżenia cache w tle według powodu",
+            "weatherapp_cache_refresh_errors_total", "Nieudane odświeżenia cache w tle",
+            "weatherapp_cache_decode_errors_total", "Wartości z cache, których nie dało się zdekodować",
+            "weatherapp_upstream_duration_seconds", "Czas zapytań do zewnętrznych API razem z odczytem treści",
+            "weatherapp_upstream_responses_total", "Odpowiedzi zewnętrznych API według kodu HTTP",
+            "weatherapp_upstream_bytes_total", "Bajty odebrane z zewnętrznych API");
+
+    // Rodzina metryk -> etykiety w formacie {a="x",b="y"} -> wartość
+    private static final Map<String, Map<String, LongAdder>> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, Map<String, LatencyHistogram>> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(),
+                    new ObjectName("com.tomaszwejner.weatherapp:type=Metrics"));
+        } catch (Exception e) {
+            System.err.println("Nie udało się zarejestrować metryk w JMX: " + e.getMessage());
+        }
+    }
+
+    private Metrics() {
+    }
+
+    // Zwiększa licznik o 1; etykiety podawane parami nazwa, wartość
+    static void increment(String name, String... labels) {
+        add(name, 1, labels);
+    }
+
+    static void add(String name, long amount, String... labels) {
+        COUNTERS.computeIfAbsent(name, n -> new ConcurrentHashMap<>())
+                .computeIfAbsent(labels(labels), l -> new LongAdder())
+                .add(amount);
+    }
+
+    static void recordLatency(String name, long nanos, String... labels) {
+        HISTOGRAMS.computeIfAbsent(name, n -> new ConcurrentHashMap<>())
+                .computeIfAbsent(labels(labels), l -> new LatencyHistogram())
+                .record(nanos);
+    }
+
+    /**
+     * Wynik odczytu jednego klucza z cache. Etykieta prefix to podany rodzaj zapytania
+     * (np. forecast i history, które dzielą klucze day:), a gdy go nie podano (null) -
+     * część klucza przed pierwszym ':'.
+     */
+    static void cacheResult(String tier, String prefix, String key, String result) {
+        if (prefix == null) {
+            int colon = key.indexOf(':');
+            prefix = colon > 0 ? key.substring(0, colon) : key;
+        }
+        increment("weatherapp_cache_requests_total", "tier", tier, "prefix", prefix, "result", result);
+    }
+
+    /**
+     * Wykonuje operację serwisu, mierząc jej czas; wyjątek jest liczony i przekazywany dalej.
+     */
+    static <T> T time(String operation, Callable<T> body) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return body.call();
+        } catch (Exception e) {
+            increment("weatherapp_operation_errors_total", "operation", operation);
+            throw e;
+        } finally {
+            recordLatency("weatherapp_operation_duration_seconds", System.nanoTime() - start, "operation", operation);
+        }
+    }
+
+    // Wszystkie metryki w formacie tekstowym Prometheusa (wersja 0.0.4)
+    public static String prometheusText() {
+        StringBuilder out = new StringBuilder(4096);
+
+        for (Map.Entry<String, Map<String, LongAdder>> family : new TreeMap<>(COUNTERS).entrySet()) {
+            header(out, family.getKey(), "counter");
+            for (Map.Entry<String, LongAdder> series : new TreeMap<>(family.getValue()).entrySet()) {
+                out.append(family.getKey()).append(series.getKey()).append(' ')
+                        .append(series.getValue().sum()).append('\n');
+            }
+        }
+
+        // Histogramy wystawiamy jako summary z gotowymi percentylami
+        for (Map.Entry<String, Map<String, LatencyHistogram>> family : new TreeMap<>(HISTOGRAMS).entrySet()) {
+            String name = family.getKey();
+            header(out, name, "summary");
+            for (Map.Entry<String, LatencyHistogram> series : new TreeMap<>(family.getValue()).entrySet()) {
+                String labels = series.getKey();
+                LatencyHistogram histogram = series.getValue();
+                for (double q : QUANTILES) {
+                    out.append(name).append(withLabel(labels, "quantile", String.valueOf(q))).append(' ')
+                            .append(histogram.percentileSeconds(q)).append('\n');
+                }
+                out.append(name).append("_sum").append(labels).append(' ').append(histogram.getSumSeconds()).append('\n');
+                out.append(name).append("_count").append(labels).append(' ').append(histogram.getCount()).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Uruchamia osobny serwer HTTP z endpointem /metrics, gdy ustawiono weatherapp.metrics.port
+     * (dla aplikacji okienkowej; WeatherServer wystawia /metrics na swoim porcie).
+     */
+    static void startHttpEndpointFromConfig() {
+        int port = AppConfig.getInt("weatherapp.metrics.port", 0);
+        if (port <= 0) {
+            return;
+        }
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+            server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            server.createContext("/metrics", Metrics::handle);
+            server.start();
+        } catch (IOException e) {
+            System.err.println("Nie udało się uruchomić endpointu metryk na porcie " + port + ": " + e.getMessage());
+        }
+    }
+
+    // Odpowiedź HTTP z metrykami dla Prometheusa
+    static void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] body = prometheusText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String type) {
+        String help = HELP.get(name);
+        if (help != null) {
+            out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        }
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String labels(String... pairs) {
+        if (pairs.length == 0) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(48).append('{');
+        for (int i = 0; i + 1 < pairs.length; i += 2) {
+            if (i > 0) out.append(',');
+            out.append(pairs[i]).append("=\"").append(escape(pairs[i + 1])).append('"');
+        }
+        return out.append('}').toString();
+    }
+
+    private static String withLabel(String labels, String name, String value) {
+        String label = name + "=\"" + value + "\"";
+        return labels.isEmpty() ? "{" + label + "}" : labels.substring(0, labels.length() - 1) + "," + label + "}";
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // Implementacja MXBean - odczyt bieżącego stanu liczników i histogramów
+    private static final class Bean implements MetricsMXBean {
+
+        @Override
+        public Map<String, Long> getCounters() {
+            Map<String, Long> result = new TreeMap<>();
+            COUNTERS.forEach((name, series) -> series.forEach((labels, value) -> result.put(name + labels, value.sum())));
+            return result;
+        }
+
+        @Override
+        public Map<String, Double> getLatencyP50Millis() {
+            return percentiles(0.5);
+        }
+
+        @Override
+        public Map<String, Double> getLatencyP95Millis() {
+            return percentiles(0.95);
+        }
+
+        @Override
+        public Map<String, Double> getLatencyP99Millis() {
+            return percentiles(0.99);
+        }
+
+        @Override
+        public String getPrometheusText() {
+            return prometheusText();
+        }
+
+        private static Map<String, Double> percentiles(double q) {
+            Map<String, Double> result = new TreeMap<>();
+            HISTOGRAMS.forEach((name, series) -> series.forEach((labels, histogram) ->
+                    result.put(name + labels, histogram.percentileSeconds(q) * 1000)));
+            return result;
+        }
+    }
+}
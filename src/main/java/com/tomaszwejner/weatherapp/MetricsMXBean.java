@@ -0,0 +1,21 @@
+package com.tomaszwejner.weatherapp;
+
+import java.util.Map;
+
+/**
+ * Widok metryk przez JMX (np. w JConsole / VisualVM) pod nazwą com.tomaszwejner.weatherapp:type=Metrics.
+ * Klucze map to nazwy serii w formacie Prometheusa, np. weatherapp_cache_requests_total{tier="l1",...}.
+ */
+public interface MetricsMXBean {
+
+    Map<String, Long> getCounters();
+
+    Map<String, Double> getLatencyP50Millis();
+
+    Map<String, Double> getLatencyP95Millis();
+
+    Map<String, Double> getLatencyP99Millis();
+
+    // Wszystkie metryki w formacie tekstowym Prometheusa
+    String getPrometheusText();
+}
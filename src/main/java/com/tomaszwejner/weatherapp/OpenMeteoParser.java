@@ -0,0 +1,226 @@
+package com.tomaszwejner.weatherapp;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Strumieniowy parser odpowiedzi Open-Meteo (Gson JsonReader).
+ *
+ * Odpowiedź jest czytana token po tokenie prosto ze strumienia HTTP (HttpTransport nie buforuje
+ * treści, a gzip rozpakowuje w trakcie czytania): tablice z sekcji "hourly" trafiają bezpośrednio
+ * do tablic long[]/double[], a niepotrzebne pola są pomijane bez budowania obiektów.
+ * Nie powstaje ani tablica bajtów czy String z całą treścią, ani drzewo JSON.
+ */
+final class OpenMeteoParser {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private OpenMeteoParser() {
+    }
+
+    /**
+     * Wynik parsowania: kolumny godzinowe i pola z "current_weather" (NaN / null, gdy odpowiedź
+     * ich nie zawiera). Mapa current jest tą samą mapą, którą widzi weather, więc wywołujący
+     * może ją uzupełnić wartościami "aktualnymi" już po parsowaniu.
+     */
+    record Response(HourlyWeather weather, Map<String, Double> current, double currentTemperature,
+                    double currentWindspeed, String currentTime) {
+    }
+
+    // Czyta odpowiedź dla jednej lokalizacji ze strumienia (UTF-8); strumień zamyka wywołujący
+    static Response parse(InputStream in, List<String> parameters) throws IOException {
+        return parse(new InputStreamReader(in, StandardCharsets.UTF_8), parameters);
+    }
+
+    static Response parse(Reader in, List<String> parameters) throws IOException {
+        // Readera nie zamykamy - zamknąłby strumień wywołującego
+        return readResponse(new JsonReader(in), parameters);
+    }
+
+    /**
+     * Czyta odpowiedź dla listy współrzędnych: Open-Meteo zwraca wtedy tablicę obiektów
+     * w kolejności współrzędnych z zapytania (dla jednej lokalizacji - sam obiekt).
+     */
+    static List<Response> parseAll(InputStream in, List<String> parameters) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<Response> responses = new ArrayList<>();
+        if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                responses.add(readResponse(reader, parameters));
+            }
+            reader.endArray();
+        } else {
+            responses.add(readResponse(reader, parameters));
+        }
+        return responses;
+    }
+
+    private static Response readResponse(JsonReader reader, List<String> parameters) throws IOException {
+        double lat = Double.NaN;
+        double lon = Double.NaN;
+        long[] epochHours = new long[0];
+        Map<String, double[]> columns = new LinkedHashMap<>();
+        double temperature = Double.NaN;
+        double windspeed = Double.NaN;
+        String currentTime = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "latitude" -> lat = readDouble(reader);
+                case "longitude" -> lon = readDouble(reader);
+                case "hourly" -> epochHours = readHourly(reader, parameters, columns);
+                case "current_weather" -> {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "temperature" -> temperature = readDouble(reader);
+                            case "windspeed" -> windspeed = readDouble(reader);
+                            case "time" -> currentTime = readTime(reader);
+                            default -> reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        // Kolumny w kolejności parametrów z zapytania, a nie w kolejności z odpowiedzi
+        Map<String, double[]> ordered = new LinkedHashMap<>();
+        for (String param : parameters) {
+            double[] column = columns.get(param);
+            if (column != null) {
+                ordered.put(param, column);
+            }
+        }
+
+        Map<String, Double> current = new HashMap<>();
+        HourlyWeather weather = new HourlyWeather(lat, lon, epochHours, ordered, current);
+        return new Response(weather, current, temperature, windspeed, currentTime);
+    }
+
+    /**
+     * Czyta sekcję "hourly". Tablice parametrów mogą wystąpić przed tablicą "time",
+     * dlatego na końcu wszystkie kolumny są wyrównywane do długości osi czasu.
+     */
+    private static long[] readHourly(JsonReader reader, List<String> parameters,
+                                     Map<String, double[]> columns) throws IOException {
+        long[] epochHours = new long[0];
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("time")) {
+                epochHours = readTimeArray(reader);
+            } else if (parameters.contains(name) && !columns.containsKey(name)) {
+                columns.put(name, readDoubleArray(reader));
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        for (Map.Entry<String, double[]> entry : columns.entrySet()) {
+            double[] column = entry.getValue();
+            if (column.length != epochHours.length) {
+                double[] resized = Arrays.copyOf(column, epochHours.length);
+                if (column.length < resized.length) {
+                    Arrays.fill(resized, column.length, resized.length, Double.NaN);
+                }
+                entry.setValue(resized);
+            }
+        }
+        return epochHours;
+    }
+
+    private static long[] readTimeArray(JsonReader reader) throws IOException {
+        long[] values = new long[INITIAL_CAPACITY];
+        int count = 0;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            // Czas jako tekst ISO albo (przy timeformat=unixtime) sekundy od epoki
+            values[count++] = reader.peek() == JsonToken.NUMBER
+                    ? Math.floorDiv(reader.nextLong(), 3600L)
+                    : toEpochHour(reader.nextString());
+        }
+        reader.endArray();
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+    private static double[] readDoubleArray(JsonReader reader) throws IOException {
+        double[] values = new double[INITIAL_CAPACITY];
+        int count = 0;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = readDouble(reader);
+        }
+        reader.endArray();
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+    // Liczba albo NaN dla null (i dla wartości, które nie są liczbą)
+    private static double readDouble(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NUMBER) {
+            return reader.nextDouble();
+        }
+        reader.skipValue();
+        return Double.NaN;
+    }
+
+    private static String readTime(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    /**
+     * Zamienia czas ISO "yyyy-MM-ddTHH:mm" na liczbę godzin od epoki (UTC) bez tworzenia
+     * obiektów LocalDateTime - ta funkcja jest wołana dla każdej godziny odpowiedzi.
+     */
+    static long toEpochHour(String isoTime) {
+        int year = parseInt(isoTime, 0, 4);
+        int month = parseInt(isoTime, 5, 7);
+        int day = parseInt(isoTime, 8, 10);
+        int hour = isoTime.length() >= 13 ? parseInt(isoTime, 11, 13) : 0;
+        return LocalDate.of(year, month, day).toEpochDay() * 24L + hour;
+    }
+
+    private static int parseInt(String text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Niepoprawny format czasu: " + text);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,108 @@
+package com.tomaszwejner.weatherapp;
+
+import java.util.Arrays;
+
+/**
+ * Redukcja serii do kolumn pikseli dla TimeSeriesChart: dla każdej kolumny obszaru wykresu
+ * najmniejsza i największa wartość oraz pierwsza i ostatnia (do połączenia z sąsiednimi kolumnami).
+ * Pionowa kreska min-max w każdej kolumnie daje ten sam obraz co wszystkie punkty, a koszt rysowania
+ * zależy od szerokości wykresu, nie od liczby godzin.
+ *
+ * Tablice są używane ponownie przy kolejnych wywołaniach compute (jeden obiekt na wykres, wątek FX).
+ */
+final class PixelColumns {
+
+    private double[] min = new double[0];
+    private double[] max = new double[0];
+    private double[] first = new double[0];
+    private double[] last = new double[0];
+    private boolean[] present = new boolean[0];
+    private int width;
+
+    /**
+     * Zlicza punkty z okna czasu [fromHour, toHour] do width kolumn; wartości NaN są pomijane.
+     *
+     * @param epochHours czasy punktów (rosnąco)
+     * @return liczba punktów w oknie
+     */
+    int compute(long[] epochHours, double[] values, double fromHour, double toHour, int width) {
+        ensureCapacity(width);
+        this.width = width;
+        Arrays.fill(present, 0, width, false);
+
+        int from = firstIndexAtOrAfter(epochHours, fromHour);
+        int to = firstIndexAtOrAfter(epochHours, Math.nextUp(toHour));
+        double columnsPerHour = width / (toHour - fromHour);
+        int count = 0;
+
+        for (int i = from; i < to; i++) {
+            double value = values[i];
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            int column = Math.min(width - 1, (int) ((epochHours[i] - fromHour) * columnsPerHour));
+            if (!present[column]) {
+                present[column] = true;
+                min[column] = value;
+                max[column] = value;
+                first[column] = value;
+            } else if (value < min[column]) {
+                min[column] = value;
+            } else if (value > max[column]) {
+                max[column] = value;
+            }
+            last[column] = value;
+            count++;
+        }
+        return count;
+    }
+
+    // Indeks pierwszego punktu nie wcześniejszego niż hour
+    static int firstIndexAtOrAfter(long[] epochHours, double hour) {
+        int low = 0;
+        int high = epochHours.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (epochHours[mid] < hour) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    int width() {
+        return width;
+    }
+
+    boolean present(int column) {
+        return present[column];
+    }
+
+    double min(int column) {
+        return min[column];
+    }
+
+    double max(int column) {
+        return max[column];
+    }
+
+    double first(int column) {
+        return first[column];
+    }
+
+    double last(int column) {
+        return last[column];
+    }
+
+    private void ensureCapacity(int width) {
+        if (present.length < width) {
+            min = new double[width];
+            max = new double[width];
+            first = new double[width];
+            last = new double[width];
+            present = new boolean[width];
+        }
+    }
+}
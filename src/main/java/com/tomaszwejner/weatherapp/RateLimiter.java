@@ -0,0 +1,54 @@
+package com.tomaszwejner.weatherapp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ogranicznik liczby zapytań typu token bucket, wspólny dla całego procesu.
+ * Gdy limit jest wyczerpany, wywołujący nie dostaje błędu, tylko czeka w kolejce
+ * na swój przydział (kolejność zgodna z kolejnością wywołań acquire).
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;
+    private final int burst;
+
+    // Moment, od którego dostępny jest kolejny przydział
+    private long nextFreeNanos;
+
+    /**
+     * @param permitsPerSecond dozwolona średnia liczba zapytań na sekundę
+     * @param burst            ile zapytań może przejść od razu po okresie bezczynności
+     */
+    public RateLimiter(double permitsPerSecond, int burst) {
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.burst = Math.max(1, burst);
+        this.nextFreeNanos = System.nanoTime();
+    }
+
+    // Czeka, aż zapytanie może zostać wykonane; przerwane czekanie oddaje zarezerwowany przydział
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+
+            // Niewykorzystane przydziały kumulują się najwyżej do wielkości "burst"
+            long earliest = now - (burst - 1) * intervalNanos;
+            if (nextFreeNanos < earliest) {
+                nextFreeNanos = earliest;
+            }
+            waitNanos = nextFreeNanos - now;
+            nextFreeNanos += intervalNanos;
+        }
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                // Późniejsze rezerwacje zostają na swoich miejscach - zwolniony przydział trafi do kolejnego wywołania
+                synchronized (this) {
+                    nextFreeNanos -= intervalNanos;
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.tomaszwejner.weatherapp;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Warstwa cache w Redisie oparta o pulę połączeń (JedisPool), bezpieczna wątkowo.
+ *
+ * Gdy Redis jest niedostępny, cache jest omijany (odczyt zwraca brak wartości, zapis jest pomijany),
+ * a serwisy pobierają dane bezpośrednio z API. Co weatherapp.redis.retryIntervalMs jeden wątek
+ * sprawdza PING-iem, czy Redis wrócił - jeśli tak, cache jest automatycznie włączany ponownie.
+ *
+ * Ustawienia (AppConfig):
+ *  weatherapp.redis.enabled, weatherapp.redis.host, weatherapp.redis.port, weatherapp.redis.timeoutMs,
+ *  weatherapp.redis.pool.maxTotal, weatherapp.redis.pool.maxIdle, weatherapp.redis.pool.minIdle,
+ *  weatherapp.redis.retryIntervalMs
+ */
+public class RedisCache {
+
+    private static final RedisCache SHARED = new RedisCache(
+            AppConfig.getBoolean("weatherapp.redis.enabled", true),
+            AppConfig.get("weatherapp.redis.host", "localhost"),
+            AppConfig.getInt("weatherapp.redis.port", 6379),
+            AppConfig.getInt("weatherapp.redis.timeoutMs", 2000),
+            AppConfig.getInt("weatherapp.redis.pool.maxTotal", 16),
+            AppConfig.getInt("weatherapp.redis.pool.maxIdle", 8),
+            AppConfig.getInt("weatherapp.redis.pool.minIdle", 0),
+            AppConfig.getLong("weatherapp.redis.retryIntervalMs", 5000));
+
+    private final boolean enabled;
+    private final String host;
+    private final int port;
+    private final int timeoutMs;
+    private final JedisPoolConfig poolConfig;
+    private final long retryIntervalMs;
+
+    // Pula tworzona leniwie przy pierwszym użyciu - konstruktor nie łączy się z Redisem
+    private volatile JedisPool pool;
+
+    // Stan obwodu: dopóki bypassUntil jest w przyszłości, Redis jest omijany
+    private volatile boolean circuitOpen;
+    private volatile long bypassUntil;
+    private final AtomicBoolean probing = new AtomicBoolean();
+
+    // Wartość z cache razem z pozostałym czasem życia klucza (ujemny, gdy klucz nie wygasa)
+    public record TimedValue(String value, long ttlMillis) {
+    }
+
+    public RedisCache(boolean enabled, String host, int port, int timeoutMs,
+                      int maxTotal, int maxIdle, int minIdle, long retryIntervalMs) {
+        this.enabled = enabled;
+        this.host = host;
+        this.port = port;
+        this.timeoutMs = timeoutMs;
+        this.retryIntervalMs = retryIntervalMs;
+
+        this.poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(maxTotal);
+        poolConfig.setMaxIdle(maxIdle);
+        poolConfig.setMinIdle(minIdle);
+        poolConfig.setMaxWait(Duration.ofMillis(timeoutMs)); // nie czekamy w nieskończoność na wolne połączenie
+        poolConfig.setTestWhileIdle(true);
+    }
+
+    // Cache współdzielony przez wszystkie serwisy w procesie
+    public static RedisCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Czy Redis jest w tej chwili używany. Gdy obwód jest otwarty i minął czas ponowienia,
+     * jeden wątek sprawdza dostępność Redisa; pozostałe w tym czasie nadal omijają cache.
+     */
+    public boolean isAvailable() {
+        if (!enabled) {
+            return false;
+        }
+        if (!circuitOpen) {
+            return true;
+        }
+        if (System.currentTimeMillis() < bypassUntil || !probing.compareAndSet(false, true)) {
+            return false;
+        }
+        try (Jedis jedis = pool().getResource()) {
+            jedis.ping();
+            circuitOpen = false;
+            System.err.println("Redis " + host + ":" + port + " znów dostępny - cache włączony");
+            return true;
+        } catch (JedisException e) {
+            bypassUntil = System.currentTimeMillis() + retryIntervalMs;
+            return false;
+        } finally {
+            probing.set(false);
+        }
+    }
+
+    // Zwraca wartość klucza albo null (brak wartości lub Redis niedostępny)
+    public String get(String key) {
+        return getAll(List.of(key)).get(0);
+    }
+
+    /**
+     * Odczytuje wiele kluczy jednym poleceniem MGET.
+     * Zwraca listę w kolejności kluczy (null dla braków); gdy Redis jest niedostępny - same null.
+     */
+    public List<String> getAll(List<String> keys) {
+        if (keys.isEmpty() || !isAvailable()) {
+            return new ArrayList<>(Collections.nCopies(keys.size(), null));
+        }
+        try (Jedis jedis = pool().getResource()) {
+            List<String> values = jedis.mget(keys.toArray(new String[0]));
+            recordLookups(keys, values);
+            return values;
+        } catch (JedisException e) {
+            onFailure(e);
+            return new ArrayList<>(Collections.nCopies(keys.size(), null));
+        }
+    }
+
+    /**
+     * Odczytuje wiele kluczy wraz z ich pozostałym TTL (GET + PTTL w jednym potoku).
+     * Używane przez cache L1, żeby wpis w pamięci wygasał razem z kluczem w Redisie.
+     * Dla braków (i gdy Redis jest niedostępny) zwraca null na danej pozycji.
+     */
+    public List<TimedValue> getAllWithTtl(List<String> keys) {
+        return getAllWithTtl(keys, null);
+    }
+
+    // Jak getAllWithTtl, z rodzajem zapytania w metrykach (zob. Metrics.cacheResult)
+    public List<TimedValue> getAllWithTtl(List<String> keys, String prefix) {
+        List<TimedValue> result = new ArrayList<>(Collections.nCopies(keys.size(), null));
+        if (keys.isEmpty()) {
+            return result;
+        }
+        if (!isAvailable()) {
+            recordResults(keys, prefix, "bypass");
+            return result;
+        }
+        try (Jedis jedis = pool().getResource()) {
+            Pipeline pipeline = jedis.pipelined();
+            List<Response<String>> values = new ArrayList<>(keys.size());
+            List<Response<Long>> ttls = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                values.add(pipeline.get(key));
+                ttls.add(pipeline.pttl(key));
+            }
+            pipeline.sync();
+
+            for (int i = 0; i < keys.size(); i++) {
+                String value = values.get(i).get();
+                if (value != null) {
+                    result.set(i, new TimedValue(value, ttls.get(i).get()));
+                }
+                Metrics.cacheResult("l2", prefix, keys.get(i), value != null ? "hit" : "miss");
+            }
+        } catch (JedisException e) {
+            recordResults(keys, prefix, "error");
+            onFailure(e);
+        }
+        return result;
+    }
+
+    private static void recordResults(List<String> keys, String prefix, String result) {
+        for (String key : keys) {
+            Metrics.cacheResult("l2", prefix, key, result);
+        }
+    }
+
+    // Zapisuje wartość z czasem życia w sekundach
+    public void set(String key, int ttlSeconds, String value) {
+        if (!isAvailable()) {
+            return;
+        }
+        try (Jedis jedis = pool().getResource()) {
+            jedis.setex(key, ttlSeconds, value);
+        } catch (JedisException e) {
+            onFailure(e);
+        }
+    }
+
+    // Zapisuje wiele wartości w jednym potoku (pipeline) - jedna podróż sieciowa zamiast wielu
+    public void setAll(Map<String, String> values, int ttlSeconds) {
+        if (values.isEmpty() || !isAvailable()) {
+            return;
+        }
+        try (Jedis jedis = pool().getResource()) {
+            Pipeline pipeline = jedis.pipelined();
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                pipeline.setex(entry.getKey(), ttlSeconds, entry.getValue());
+            }
+            pipeline.sync();
+        } catch (JedisException e) {
+            onFailure(e);
+        }
+    }
+
+    private static void recordLookups(List<String> keys, List<String> values) {
+        for (int i = 0; i < keys.size(); i++) {
+            Metrics.cacheResult("l2", null, keys.get(i), values.get(i) != null ? "hit" : "miss");
+        }
+    }
+
+    // Błąd połączenia otwiera obwód; inne błędy tylko logujemy
+    private void onFailure(JedisException e) {
+        if (e instanceof JedisConnectionException) {
+            bypassUntil = System.currentTimeMillis() + retryIntervalMs;
+            if (!circuitOpen) {
+                circuitOpen = true;
+                System.err.println("Redis " + host + ":" + port + " niedostępny - cache pominięty: " + e.getMessage());
+            }
+        } else {
+            System.err.println("Błąd Redis: " + e.getMessage());
+        }
+    }
+
+    private JedisPool pool() {
+        JedisPool current = pool;
+        if (current == null) {
+            synchronized (this) {
+                current = pool;
+                if (current == null) {
+                    current = new JedisPool(poolConfig, host, port, timeoutMs);
+                    pool = current;
+                }
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,79 @@
+package com.tomaszwejner.weatherapp;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Bufor wyjścia rendererów. Wiersze są składane w StringBuilderze (liczby dopisywane bez
+ * pośrednich Stringów) i przekazywane do celu porcjami po ok. 8 KB. Gdy celem jest sam
+ * StringBuilder, piszemy do niego bezpośrednio.
+ */
+final class RenderBuffer {
+
+    private static final int CHUNK = 8192;
+
+    private final Appendable out;
+    private final StringBuilder buffer;
+    private final boolean direct;
+    private char[] chars;
+
+    RenderBuffer(Appendable out) {
+        this.out = out;
+        this.direct = out instanceof StringBuilder;
+        this.buffer = direct ? (StringBuilder) out : new StringBuilder(CHUNK + 1024);
+    }
+
+    // Bieżący bufor - renderer dopisuje do niego wiersz i woła endRow()
+    StringBuilder builder() {
+        return buffer;
+    }
+
+    void endRow() throws IOException {
+        if (!direct && buffer.length() >= CHUNK) {
+            flush();
+        }
+    }
+
+    /**
+     * Dopisuje liczbę dokładnie tak jak Double.toString. Wartości z API mają najwyżej dwa miejsca
+     * po przecinku - takie składamy z części całkowitej i ułamkowej bez alokacji; pozostałe
+     * (i notacja wykładnicza) idą przez StringBuilder.append(double).
+     */
+    static void appendNumber(StringBuilder out, double value) {
+        long hundredths = Math.round(value * 100);
+        // k / 100.0 to double najbliższy dziesiętnemu k/100, więc to jest też najkrótszy zapis wartości
+        if (hundredths == 0 || hundredths / 100.0 != value || Math.abs(value) < 1e-3 || Math.abs(value) >= 1e7) {
+            out.append(value);
+            return;
+        }
+        if (hundredths < 0) {
+            out.append('-');
+            hundredths = -hundredths;
+        }
+        out.append(hundredths / 100).append('.');
+        long fraction = hundredths % 100;
+        if (fraction % 10 == 0) {
+            out.append(fraction / 10);
+        } else {
+            if (fraction < 10) out.append('0');
+            out.append(fraction);
+        }
+    }
+
+    void flush() throws IOException {
+        if (direct || buffer.isEmpty()) {
+            return;
+        }
+        if (out instanceof Writer writer) {
+            // Writer.append(CharSequence) robi toString() - kopiujemy przez wielokrotnie używaną tablicę
+            if (chars == null || chars.length < buffer.length()) {
+                chars = new char[buffer.capacity()];
+            }
+            buffer.getChars(0, buffer.length(), chars, 0);
+            writer.write(chars, 0, buffer.length());
+        } else {
+            out.append(buffer);
+        }
+        buffer.setLength(0);
+    }
+}
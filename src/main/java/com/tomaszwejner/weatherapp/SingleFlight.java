@@ -0,0 +1,58 @@
+package com.tomaszwejner.weatherapp;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Łączenie jednoczesnych, identycznych zapytań (single flight).
+ *
+ * Dla danego klucza w locie jest najwyżej jedno wywołanie loadera. Pierwszy wywołujący je wykonuje,
+ * a pozostali czekają i dostają ten sam wynik albo ten sam wyjątek. Po zakończeniu klucz jest zwalniany,
+ * więc następne wywołanie znowu sięga do źródła (zwykle trafia już jednak w świeży cache).
+ */
+final class SingleFlight<T> {
+
+    private final ConcurrentHashMap<String, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+
+    T execute(String key, Callable<T> loader) throws Exception {
+        while (true) {
+            CompletableFuture<T> flight = new CompletableFuture<>();
+            CompletableFuture<T> existing = inFlight.putIfAbsent(key, flight);
+
+            if (existing == null) {
+                try {
+                    T value = loader.call();
+                    flight.complete(value);
+                    return value;
+                } catch (Exception | Error e) {
+                    flight.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    inFlight.remove(key, flight);
+                }
+            }
+
+            try {
+                return existing.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+
+                // Wywołanie prowadzące zostało przerwane (np. anulowane zapytanie w UI) -
+                // to nie jest błąd źródła, więc czekający próbuje jeszcze raz sam
+                if (cause instanceof InterruptedException || cause instanceof InterruptedIOException) {
+                    continue;
+                }
+                if (cause instanceof Exception exception) {
+                    throw exception;
+                }
+                if (cause instanceof Error error) {
+                    throw error;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.tomaszwejner.weatherapp;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Format tekstowy okna aplikacji: dla każdej godziny data, a pod nią wartości parametrów
+ * z polską etykietą i jednostką. Etykiety i jednostki są wyznaczane raz na kolumnę.
+ */
+public class TextWeatherRenderer implements WeatherRenderer {
+
+    private final String emptyMessage;
+
+    /**
+     * @param emptyMessage komunikat, gdy API nie zwróciło danych godzinowych
+     */
+    public TextWeatherRenderer(String emptyMessage) {
+        this.emptyMessage = emptyMessage;
+    }
+
+    @Override
+    public void render(HourlyWeather weather, Appendable out) throws IOException {
+        if (weather.isEmpty()) {
+            out.append(emptyMessage);
+            return;
+        }
+
+        List<String> parameters = weather.getParameters();
+        int count = parameters.size();
+        double[][] columns = new double[count][];
+        String[] prefixes = new String[count];
+        String[] units = new String[count];
+        boolean[] precipitation = new boolean[count];
+        for (int p = 0; p < count; p++) {
+            String param = parameters.get(p);
+            columns[p] = weather.getColumn(param);
+            prefixes[p] = "  " + WeatherFormatter.getLabelForParameter(param) + ": ";
+            units[p] = WeatherFormatter.getUnitForParameter(param);
+            precipitation[p] = param.toLowerCase().contains("precipitation");
+        }
+
+        HourLabels labels = HourLabels.display();
+        RenderBuffer buffer = new RenderBuffer(out);
+        StringBuilder row = buffer.builder();
+
+        // Iteracja przez godziny
+        for (int i = 0; i < weather.size(); i++) {
+            labels.append(row, weather.getEpochHour(i));
+            row.append(":\n");
+
+            // Dla każdego parametru wypisujemy jego wartość
+            for (int p = 0; p < count; p++) {
+                double value = columns[p][i];
+                row.append(prefixes[p]);
+                if (Double.isNaN(value)) {
+                    row.append("brak danych");
+                } else if (precipitation[p] && value == 0.0) {
+                    row.append("brak");
+                } else {
+                    RenderBuffer.appendNumber(row, value);
+                    row.append(units[p]);
+                }
+                row.append('\n');
+            }
+
+            row.append('\n');
+            buffer.endRow();
+        }
+        buffer.flush();
+    }
+
+    @Override
+    public String contentType() {
+        return "text/plain; charset=utf-8";
+    }
+}
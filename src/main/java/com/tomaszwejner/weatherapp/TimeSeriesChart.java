@@ -0,0 +1,458 @@
+package com.tomaszwejner.weatherapp;
+
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Tooltip;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Wykres szeregów czasowych rysowany na Canvas, dla długich serii godzinowych (miesiące, lata).
+ *
+ * W przeciwieństwie do LineChart nie tworzy węzła sceny na punkt ani kategorii na etykietę:
+ * oś czasu jest liczbowa (godziny od epoki), a każda seria jest rysowana jako min-max na kolumnę
+ * pikseli (PixelColumns), gdy w oknie jest więcej punktów niż pikseli, albo jako zwykła łamana.
+ * Kółko myszy przybliża wokół kursora, przeciąganie przesuwa okno, podwójne kliknięcie pokazuje
+ * cały zakres. Każda zmiana rysuje od nowa tylko widoczny fragment (wyszukiwanie binarne po czasie).
+ *
+ * Można go używać w FXML jak zwykłej kontrolki (prefWidth / prefHeight).
+ */
+public final class TimeSeriesChart extends Region {
+
+    // Seria wykresu: godziny od epoki (rosnąco) i wartości (NaN = brak danych)
+    public record Series(String name, long[] epochHours, double[] values) {
+    }
+
+    private static final Color[] PALETTE = {
+            Color.web("#d9534f"), Color.web("#337ab7"), Color.web("#5cb85c"), Color.web("#f0ad4e"), Color.web("#6f42c1")
+    };
+
+    // Kroki osi czasu w godzinach - wybierany najmniejszy, przy którym etykiety się nie nakładają
+    private static final long[] TIME_STEPS = {1, 2, 3, 6, 12, 24, 48, 72, 168, 336, 720, 2160, 4320, 8760};
+
+    private static final double LEFT = 64;
+    private static final double RIGHT = 16;
+    private static final double TOP = 28;
+    private static final double BOTTOM = 32;
+    private static final double MIN_LABEL_SPACING = 120;
+    private static final double MIN_VISIBLE_HOURS = 6;
+
+    private final Canvas canvas = new Canvas();
+    private final List<Series> series = new ArrayList<>();
+    private final PixelColumns columns = new PixelColumns();
+    // Tworzony przy pierwszym najechaniu - wykres może powstawać poza wątkiem FX (wczytywanie FXML w tle)
+    private Tooltip tooltip;
+
+    private String valueLabel = "";
+    private String unit = "";
+    private boolean includeZero;
+
+    // Widoczne okno czasu (godziny od epoki)
+    private double viewFrom;
+    private double viewTo;
+
+    // Stan przeciągania
+    private double dragStartX;
+    private double dragStartFrom;
+
+    public TimeSeriesChart() {
+        getChildren().add(canvas);
+        setMinSize(200, 150);
+
+        canvas.setOnScroll(this::onScroll);
+        canvas.setOnMousePressed(event -> {
+            dragStartX = event.getX();
+            dragStartFrom = viewFrom;
+            hideTooltip();
+        });
+        canvas.setOnMouseDragged(this::onDrag);
+        canvas.setOnMouseClicked(event -> {
+            if (event.getButton() == MouseButton.PRIMARY && event.getClickCount() == 2) {
+                resetView();
+            }
+        });
+        canvas.setOnMouseMoved(this::onHover);
+        canvas.setOnMouseExited(event -> hideTooltip());
+    }
+
+    // Opis osi wartości (np. "Opady (mm)") i jednostka w tooltipie (np. " mm")
+    public void setValueLabel(String valueLabel, String unit) {
+        this.valueLabel = valueLabel;
+        this.unit = unit;
+        render();
+    }
+
+    // Czy zakres osi wartości zawsze obejmuje zero (np. opady)
+    public void setIncludeZero(boolean includeZero) {
+        this.includeZero = includeZero;
+        render();
+    }
+
+    /**
+     * Dodaje serię; wartości null i NaN to brak danych. Widok obejmuje cały zakres wszystkich serii.
+     */
+    public void addSeries(String name, long[] epochHours, List<Double> values) {
+        int n = Math.min(epochHours.length, values.size());
+        double[] column = new double[n];
+        for (int i = 0; i < n; i++) {
+            Double value = values.get(i);
+            column[i] = value != null ? value : Double.NaN;
+        }
+        series.add(new Series(name, n == epochHours.length ? epochHours : Arrays.copyOf(epochHours, n), column));
+        resetView();
+    }
+
+    public void clear() {
+        series.clear();
+        resetView();
+    }
+
+    public List<Series> getSeries() {
+        return Collections.unmodifiableList(series);
+    }
+
+    // Pokazuje cały zakres danych
+    public void resetView() {
+        double[] full = fullRange();
+        viewFrom = full[0];
+        viewTo = full[1];
+        render();
+    }
+
+    @Override
+    protected void layoutChildren() {
+        canvas.setWidth(snapSizeX(getWidth()));
+        canvas.setHeight(snapSizeY(getHeight()));
+        render();
+    }
+
+    private void onScroll(ScrollEvent event) {
+        double plotWidth = plotWidth();
+        if (series.isEmpty() || plotWidth <= 0 || event.getDeltaY() == 0) {
+            return;
+        }
+        // Przybliżenie wokół punktu pod kursorem: ta godzina zostaje w tym samym miejscu ekranu
+        double anchor = viewFrom + (event.getX() - LEFT) / plotWidth * (viewTo - viewFrom);
+        double factor = Math.pow(1.0015, -event.getDeltaY());
+        double span = Math.max(MIN_VISIBLE_HOURS, Math.min(fullSpan(), (viewTo - viewFrom) * factor));
+        double ratio = (anchor - viewFrom) / (viewTo - viewFrom);
+        setView(anchor - ratio * span, span);
+        event.consume();
+    }
+
+    private void onDrag(MouseEvent event) {
+        double plotWidth = plotWidth();
+        if (series.isEmpty() || plotWidth <= 0) {
+            return;
+        }
+        double span = viewTo - viewFrom;
+        setView(dragStartFrom - (event.getX() - dragStartX) / plotWidth * span, span);
+    }
+
+    // Ustawia okno o danej długości, nie wychodząc poza zakres danych
+    private void setView(double from, double span) {
+        double[] full = fullRange();
+        from = Math.max(full[0], Math.min(from, full[1] - span));
+        viewFrom = from;
+        viewTo = from + span;
+        render();
+    }
+
+    private void onHover(MouseEvent event) {
+        double plotWidth = plotWidth();
+        if (series.isEmpty() || plotWidth <= 0 || event.getX() < LEFT || event.getX() > LEFT + plotWidth) {
+            hideTooltip();
+            return;
+        }
+        double hour = viewFrom + (event.getX() - LEFT) / plotWidth * (viewTo - viewFrom);
+
+        // Najbliższa godzina z danymi w każdej serii; przy kilku seriach ta najbliższa kursorowi w pionie
+        double[] range = valueRange();
+        String text = null;
+        double bestDistance = Double.MAX_VALUE;
+        for (Series s : series) {
+            int index = nearestIndex(s, hour);
+            if (index < 0) {
+                continue;
+            }
+            double distance = Math.abs(toY(s.values()[index], range) - event.getY());
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                text = HourLabels.display().format(s.epochHours()[index]) + ", " + s.values()[index] + unit;
+            }
+        }
+        if (text == null) {
+            hideTooltip();
+            return;
+        }
+        if (tooltip == null) {
+            tooltip = new Tooltip();
+        }
+        tooltip.setText(text);
+        tooltip.show(canvas, event.getScreenX() + 12, event.getScreenY() + 12);
+    }
+
+    private void hideTooltip() {
+        if (tooltip != null) {
+            tooltip.hide();
+        }
+    }
+
+    // Indeks punktu z danymi najbliższego godzinie (-1, gdy seria nie ma danych w pobliżu)
+    private static int nearestIndex(Series s, double hour) {
+        long[] hours = s.epochHours();
+        int after = PixelColumns.firstIndexAtOrAfter(hours, hour);
+        int before = after - 1;
+        while (before >= 0 && Double.isNaN(s.values()[before])) {
+            before--;
+        }
+        while (after < hours.length && Double.isNaN(s.values()[after])) {
+            after++;
+        }
+        if (before < 0) {
+            return after < hours.length ? after : -1;
+        }
+        if (after >= hours.length) {
+            return before;
+        }
+        return hour - hours[before] <= hours[after] - hour ? before : after;
+    }
+
+    private void render() {
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, width, height);
+        double plotWidth = plotWidth();
+        double plotHeight = height - TOP - BOTTOM;
+        if (plotWidth <= 0 || plotHeight <= 0) {
+            return;
+        }
+
+        gc.setFont(Font.font(11));
+        if (series.isEmpty()) {
+            gc.setFill(Color.GRAY);
+            gc.setTextAlign(TextAlignment.CENTER);
+            gc.setTextBaseline(VPos.CENTER);
+            gc.fillText("Brak danych", LEFT + plotWidth / 2, TOP + plotHeight / 2);
+            return;
+        }
+
+        double[] range = valueRange();
+        drawValueAxis(gc, range, plotWidth, plotHeight);
+        drawTimeAxis(gc, plotWidth, plotHeight);
+
+        gc.save();
+        gc.beginPath();
+        gc.rect(LEFT, TOP, plotWidth, plotHeight);
+        gc.clip();
+        gc.setLineWidth(1.5);
+        for (int i = 0; i < series.size(); i++) {
+            gc.setStroke(PALETTE[i % PALETTE.length]);
+            drawSeries(gc, series.get(i), range, (int) plotWidth);
+        }
+        gc.restore();
+
+        drawLegend(gc, plotWidth);
+        gc.setStroke(Color.GRAY);
+        gc.setLineWidth(1);
+        gc.strokeRect(LEFT + 0.5, TOP + 0.5, plotWidth, plotHeight);
+    }
+
+    private void drawSeries(GraphicsContext gc, Series s, double[] range, int plotWidth) {
+        int points = columns.compute(s.epochHours(), s.values(), viewFrom, viewTo, plotWidth);
+        if (points > plotWidth) {
+            drawColumns(gc, range);
+        } else {
+            drawLine(gc, s, range);
+        }
+    }
+
+    // Więcej punktów niż pikseli: kreska min-max w każdej kolumnie, połączona z sąsiednią kolumną
+    private void drawColumns(GraphicsContext gc, double[] range) {
+        boolean previous = false;
+        for (int c = 0; c < columns.width(); c++) {
+            if (!columns.present(c)) {
+                previous = false;
+                continue;
+            }
+            double x = LEFT + c + 0.5;
+            if (previous) {
+                gc.strokeLine(x - 1, toY(columns.last(c - 1), range), x, toY(columns.first(c), range));
+            }
+            gc.strokeLine(x, toY(columns.min(c), range), x, toY(columns.max(c), range));
+            previous = true;
+        }
+    }
+
+    // Mniej punktów niż pikseli: łamana, przerwana na godzinach bez danych; punkty tuż poza oknem łączą linię z krawędzią
+    private void drawLine(GraphicsContext gc, Series s, double[] range) {
+        long[] hours = s.epochHours();
+        double[] values = s.values();
+        int from = Math.max(0, PixelColumns.firstIndexAtOrAfter(hours, viewFrom) - 1);
+        int to = Math.min(hours.length, PixelColumns.firstIndexAtOrAfter(hours, Math.nextUp(viewTo)) + 1);
+
+        boolean open = false;
+        for (int i = from; i < to; i++) {
+            if (Double.isNaN(values[i])) {
+                if (open) {
+                    gc.stroke();
+                    open = false;
+                }
+                continue;
+            }
+            double x = toX(hours[i]);
+            double y = toY(values[i], range);
+            if (!open) {
+                gc.beginPath();
+                gc.moveTo(x, y);
+                open = true;
+            } else {
+                gc.lineTo(x, y);
+            }
+        }
+        if (open) {
+            gc.stroke();
+        }
+    }
+
+    private void drawValueAxis(GraphicsContext gc, double[] range, double plotWidth, double plotHeight) {
+        double step = niceStep((range[1] - range[0]) / Math.max(2, plotHeight / 60));
+        gc.setTextAlign(TextAlignment.RIGHT);
+        gc.setTextBaseline(VPos.CENTER);
+        gc.setLineWidth(1);
+        for (double value = Math.ceil(range[0] / step) * step; value <= range[1]; value += step) {
+            double y = Math.round(toY(value, range)) + 0.5;
+            gc.setStroke(Color.gray(0.9));
+            gc.strokeLine(LEFT, y, LEFT + plotWidth, y);
+            gc.setFill(Color.gray(0.3));
+            gc.fillText(formatTick(value, step), LEFT - 6, y);
+        }
+        gc.setTextAlign(TextAlignment.LEFT);
+        gc.setTextBaseline(VPos.BOTTOM);
+        gc.fillText(valueLabel, LEFT, TOP - 8);
+    }
+
+    private void drawTimeAxis(GraphicsContext gc, double plotWidth, double plotHeight) {
+        double pixelsPerHour = plotWidth / (viewTo - viewFrom);
+        long step = TIME_STEPS[TIME_STEPS.length - 1];
+        for (long candidate : TIME_STEPS) {
+            if (candidate * pixelsPerHour >= MIN_LABEL_SPACING) {
+                step = candidate;
+                break;
+            }
+        }
+
+        HourLabels labels = HourLabels.display();
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.TOP);
+        gc.setLineWidth(1);
+        for (long hour = (long) Math.ceil(viewFrom / step) * step; hour <= viewTo; hour += step) {
+            double x = Math.round(toX(hour)) + 0.5;
+            gc.setStroke(Color.gray(0.9));
+            gc.strokeLine(x, TOP, x, TOP + plotHeight);
+            gc.setFill(Color.gray(0.3));
+            gc.fillText(step >= 24 ? labels.formatDay(hour) : labels.format(hour), x, TOP + plotHeight + 6);
+        }
+    }
+
+    private void drawLegend(GraphicsContext gc, double plotWidth) {
+        gc.setTextAlign(TextAlignment.RIGHT);
+        gc.setTextBaseline(VPos.BOTTOM);
+        double x = LEFT + plotWidth;
+        for (int i = series.size() - 1; i >= 0; i--) {
+            String name = series.get(i).name();
+            gc.setFill(PALETTE[i % PALETTE.length]);
+            gc.fillText(name, x, TOP - 8);
+            x -= name.length() * 6.5 + 24;
+        }
+    }
+
+    // Zakres osi wartości: widoczne punkty wszystkich serii z marginesem 5%
+    private double[] valueRange() {
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (Series s : series) {
+            long[] hours = s.epochHours();
+            int from = PixelColumns.firstIndexAtOrAfter(hours, viewFrom);
+            int to = PixelColumns.firstIndexAtOrAfter(hours, Math.nextUp(viewTo));
+            for (int i = from; i < to; i++) {
+                double value = s.values()[i];
+                if (!Double.isNaN(value)) {
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+            }
+        }
+        if (min > max) {
+            min = 0;
+            max = 1;
+        }
+        if (includeZero) {
+            min = Math.min(min, 0);
+            max = Math.max(max, 0);
+        }
+        double margin = max > min ? (max - min) * 0.05 : 1;
+        return new double[]{includeZero && min == 0 ? 0 : min - margin, max + margin};
+    }
+
+    private double toX(double hour) {
+        return LEFT + (hour - viewFrom) / (viewTo - viewFrom) * plotWidth();
+    }
+
+    private double toY(double value, double[] range) {
+        double plotHeight = canvas.getHeight() - TOP - BOTTOM;
+        return TOP + (range[1] - value) / (range[1] - range[0]) * plotHeight;
+    }
+
+    private double plotWidth() {
+        return Math.floor(canvas.getWidth() - LEFT - RIGHT);
+    }
+
+    private double fullSpan() {
+        double[] full = fullRange();
+        return Math.max(MIN_VISIBLE_HOURS, full[1] - full[0]);
+    }
+
+    private double[] fullRange() {
+        double from = Double.MAX_VALUE;
+        double to = -Double.MAX_VALUE;
+        for (Series s : series) {
+            if (s.epochHours().length > 0) {
+                from = Math.min(from, s.epochHours()[0]);
+                to = Math.max(to, s.epochHours()[s.epochHours().length - 1]);
+            }
+        }
+        return from > to ? new double[]{0, 1} : new double[]{from, Math.max(to, from + MIN_VISIBLE_HOURS)};
+    }
+
+    // Krok podziałki 1, 2, 2.5 lub 5 razy potęga dziesięciu, nie mniejszy niż rough
+    private static double niceStep(double rough) {
+        double magnitude = Math.pow(10, Math.floor(Math.log10(rough)));
+        for (double factor : new double[]{1, 2, 2.5, 5}) {
+            if (factor * magnitude >= rough) {
+                return factor * magnitude;
+            }
+        }
+        return 10 * magnitude;
+    }
+
+    private static String formatTick(double value, double step) {
+        if (step >= 1) {
+            return String.valueOf(Math.round(value));
+        }
+        int decimals = (int) Math.ceil(-Math.log10(step));
+        return String.format("%." + decimals + "f", value);
+    }
+}
@@ -0,0 +1,501 @@
+package com.tomaszwejner.weatherapp;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Lokalny magazyn pobranych danych godzinowych (tylko dopisywanie), niezależny od TTL cache.
+ *
+ * Dane leżą w plikach segmentów seg-NNNNNN.dat mapowanych do pamięci. Każdy rekord ma stałą
+ * długość 16 bajtów: id serii (int), godzina od epoki (int), wartość (double). Seria to para
+ * lokalizacja (klucz komórki siatki) + zmienna; słownik serii jest w pliku series.txt.
+ * Nowszy rekord tej samej serii i godziny zastępuje starszy, a rekord z tą samą wartością nie jest
+ * dopisywany drugi raz (ponowne pobranie minionych dni nie zajmuje miejsca). WeatherService
+ * zapisuje tu tylko dni zakończone w chwili pobrania, więc magazyn nie zawiera prognoz.
+ *
+ * Indeks (seria -> doba -> pozycje 24 rekordów) jest trzymany w pamięci i odtwarzany przy otwarciu
+ * przez przejrzenie segmentów w kolejności numerów, więc odczyt zakresu to kilka odwołań do mapy
+ * i odczyty z zamapowanych plików - miesiące danych godzinowych w ułamku milisekundy.
+ *
+ * Kompaktowanie w tle przepisuje żywe rekordy z segmentów, w których większość rekordów została
+ * zastąpiona, do bieżącego segmentu i usuwa stare pliki.
+ *
+ * Ustawienia (AppConfig):
+ *  weatherapp.store.enabled                - czy zapisywać dane (domyślnie true)
+ *  weatherapp.store.dir                    - katalog (domyślnie ~/.weatherapp/timeseries)
+ *  weatherapp.store.segmentMb              - rozmiar segmentu w MB (domyślnie 64)
+ *  weatherapp.store.compactIntervalSeconds - co ile sprawdzać segmenty do kompaktowania (domyślnie 600)
+ */
+public final class TimeSeriesStore implements Closeable {
+
+    private static final int RECORD_BYTES = 16;
+
+    // Segment jest kompaktowany, gdy żywych rekordów jest mniej niż połowa
+    private static final double COMPACT_LIVE_RATIO = 0.5;
+
+    private static final String SERIES_FILE = "series.txt";
+
+    // Magazyn współdzielony otwierany przy pierwszym użyciu, a nie przy załadowaniu klasy
+    private static final class Shared {
+        static final TimeSeriesStore INSTANCE = openFromConfig();
+    }
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Series> seriesByName = new HashMap<>();
+    private final List<Series> seriesById = new ArrayList<>();
+    private final BufferedWriter seriesWriter;
+
+    // Segmenty według numeru; ostatni jest segmentem bieżącym (do niego dopisujemy)
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private Segment active;
+
+    private ScheduledExecutorService compactor;
+
+    // Jedno kompaktowanie naraz (wątek w tle i wywołania bezpośrednie)
+    private final ReentrantLock compactionLock = new ReentrantLock();
+
+    // Pliki skompaktowanych segmentów, których nie udało się jeszcze usunąć (próba przy każdym kompaktowaniu);
+    // chronione przez compactionLock
+    private final List<Path> pendingDeletes = new ArrayList<>();
+
+    // Seria: pozycje rekordów dla każdej godziny, pogrupowane po dobach (-1 = brak)
+    private static final class Series {
+        final int id;
+        final String name;
+        final Map<Long, long[]> days = new HashMap<>();
+
+        Series(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    private static final class Segment {
+        final int number;
+        final Path path;
+        final FileChannel channel;
+        // Zerowane po zamknięciu segmentu, żeby mapowanie mogło zostać zwolnione przed usunięciem pliku
+        MappedByteBuffer buffer;
+        int records;
+        int live;
+
+        Segment(int number, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.number = number;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    private TimeSeriesStore(Path directory, int segmentBytes) throws IOException {
+        this.directory = directory;
+        this.recordsPerSegment = segmentBytes / RECORD_BYTES;
+        Files.createDirectories(directory);
+
+        loadSeries();
+        this.seriesWriter = Files.newBufferedWriter(directory.resolve(SERIES_FILE), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(p -> p.getFileName().toString().matches("seg-\\d{6}\\.dat")).sorted().toList();
+        }
+        for (Path file : files) {
+            Segment segment = map(file, Integer.parseInt(file.getFileName().toString().substring(4, 10)));
+            segments.put(segment.number, segment);
+            scan(segment);
+        }
+        // Ostatni segment może być krótszy (inny rozmiar segmentu w ustawieniach, obcięty plik)
+        active = segments.isEmpty() || isFull(segments.lastEntry().getValue())
+                ? newSegment()
+                : segments.lastEntry().getValue();
+    }
+
+    /**
+     * Otwiera magazyn w katalogu (tworzy go, jeśli nie istnieje).
+     *
+     * @param segmentBytes rozmiar jednego pliku segmentu
+     */
+    public static TimeSeriesStore open(Path directory, int segmentBytes) throws IOException {
+        return new TimeSeriesStore(directory, segmentBytes);
+    }
+
+    // Magazyn współdzielony przez serwisy w procesie; null, gdy wyłączony albo nie dał się otworzyć
+    public static TimeSeriesStore shared() {
+        return Shared.INSTANCE;
+    }
+
+    private static TimeSeriesStore openFromConfig() {
+        if (!AppConfig.getBoolean("weatherapp.store.enabled", true)) {
+            return null;
+        }
+        Path dir = Path.of(AppConfig.get("weatherapp.store.dir",
+                Path.of(System.getProperty("user.home"), ".weatherapp", "timeseries").toString()));
+        try {
+            TimeSeriesStore store = open(dir, AppConfig.getInt("weatherapp.store.segmentMb", 64) * 1024 * 1024);
+            store.startCompactor(AppConfig.getLong("weatherapp.store.compactIntervalSeconds", 600));
+            return store;
+        } catch (IOException e) {
+            System.err.println("Nie udało się otworzyć magazynu danych w " + dir + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Dopisuje kolumny wyniku dla lokalizacji. Wartości NaN są pomijane (brak danych),
+     * a godziny, dla których magazyn ma już tę samą wartość, nie są zapisywane ponownie.
+     *
+     * @return liczba dopisanych rekordów
+     */
+    public int append(String location, HourlyWeather weather) throws IOException {
+        return append(location, weather, Long.MAX_VALUE);
+    }
+
+    /**
+     * Jak append, ale tylko godziny wcześniejsze niż beforeHour (godzina od epoki) - np. bez
+     * prognozy na dni, które jeszcze się nie skończyły.
+     */
+    public int append(String location, HourlyWeather weather, long beforeHour) throws IOException {
+        lock.writeLock().lock();
+        try {
+            int written = 0;
+            for (String variable : weather.getParameters()) {
+                Series series = seriesFor(location, variable);
+                double[] column = weather.getColumn(variable);
+                for (int i = 0; i < weather.size(); i++) {
+                    double value = column[i];
+                    if (Double.isNaN(value)) {
+                        continue;
+                    }
+                    long hour = weather.getEpochHour(i);
+                    if (hour >= beforeHour) {
+                        continue;
+                    }
+                    long previous = position(series, hour);
+                    if (previous >= 0 && Double.doubleToLongBits(valueAt(previous)) == Double.doubleToLongBits(value)) {
+                        continue;
+                    }
+                    write(series, hour, value);
+                    written++;
+                }
+            }
+            return written;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Odczytuje kolejne godziny serii od fromHour (godzina od epoki); NaN tam, gdzie brak danych.
+     */
+    public double[] read(String location, String variable, long fromHour, int hours) {
+        double[] values = new double[hours];
+        Arrays.fill(values, Double.NaN);
+
+        lock.readLock().lock();
+        try {
+            Series series = seriesByName.get(location + '|' + variable);
+            if (series == null) {
+                return values;
+            }
+            long day = Long.MIN_VALUE;
+            long[] positions = null;
+            for (int i = 0; i < hours; i++) {
+                long hour = fromHour + i;
+                if (Math.floorDiv(hour, 24) != day) {
+                    day = Math.floorDiv(hour, 24);
+                    positions = series.days.get(day);
+                }
+                if (positions != null) {
+                    long position = positions[Math.floorMod(hour, 24)];
+                    if (position >= 0) {
+                        values[i] = valueAt(position);
+                    }
+                }
+            }
+            return values;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Przepisuje żywe rekordy z segmentów, w których zostało ich mniej niż COMPACT_LIVE_RATIO,
+     * do bieżącego segmentu i usuwa stare pliki. Segment bieżący nie jest kompaktowany.
+     *
+     * @return liczba usuniętych segmentów
+     */
+    int compact() throws IOException {
+        compactionLock.lock();
+        try {
+            return compactSegments();
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    private int compactSegments() throws IOException {
+        List<Segment> candidates = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                if (segment != active && segment.live < segment.records * COMPACT_LIVE_RATIO) {
+                    candidates.add(segment);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Każdy segment pod osobną blokadą, żeby odczyty nie czekały na całe kompaktowanie
+        for (Segment segment : candidates) {
+            lock.writeLock().lock();
+            try {
+                for (int r = 0; r < segment.records && segment.live > 0; r++) {
+                    int offset = r * RECORD_BYTES;
+                    Series series = seriesById.get(segment.buffer.getInt(offset) - 1);
+                    long hour = segment.buffer.getInt(offset + 4);
+                    if (position(series, hour) == position(segment.number, r)) {
+                        write(series, hour, segment.buffer.getDouble(offset + 8));
+                    }
+                }
+                segments.remove(segment.number);
+                segment.channel.close();
+                segment.buffer = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            pendingDeletes.add(segment.path);
+        }
+        deletePending();
+        return candidates.size();
+    }
+
+    /**
+     * Usuwa pliki skompaktowanych segmentów. Zamapowanego pliku na części systemów (Windows) nie da
+     * się usunąć, dopóki mapowanie nie zostanie zwolnione przez GC - wtedy plik czeka na następne
+     * kompaktowanie. Po ponownym otwarciu taki plik jest nieszkodliwy: jego rekordy są zastąpione
+     * przez nowsze segmenty, więc trafia do kompaktowania w pierwszym przebiegu.
+     */
+    private void deletePending() {
+        for (Iterator<Path> it = pendingDeletes.iterator(); it.hasNext(); ) {
+            Path path = it.next();
+            try {
+                Files.deleteIfExists(path);
+                it.remove();
+            } catch (IOException e) {
+                System.err.println("Nie udało się usunąć segmentu " + path + " (ponowna próba później): " + e.getMessage());
+            }
+        }
+    }
+
+    // Kompaktowanie co intervalSeconds na osobnym wątku (demon - nie blokuje zamknięcia aplikacji)
+    void startCompactor(long intervalSeconds) {
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "weatherapp-store-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(() -> {
+            try {
+                compact();
+            } catch (IOException e) {
+                System.err.println("Błąd kompaktowania magazynu danych: " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public long sizeInBytes() {
+        lock.readLock().lock();
+        try {
+            long records = 0;
+            for (Segment segment : segments.values()) {
+                records += segment.records;
+            }
+            return records * RECORD_BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int segmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+            seriesWriter.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void write(Series series, long hour, double value) throws IOException {
+        if (isFull(active)) {
+            active = newSegment();
+        }
+        int offset = active.records * RECORD_BYTES;
+        active.buffer.putDouble(offset + 8, value);
+        active.buffer.putInt(offset + 4, (int) hour);
+        active.buffer.putInt(offset, series.id);
+        index(series, hour, position(active.number, active.records));
+        active.records++;
+    }
+
+    // Zapisuje pozycję rekordu w indeksie; poprzedni rekord tej godziny przestaje być żywy
+    private void index(Series series, long hour, long position) {
+        long[] positions = series.days.computeIfAbsent(Math.floorDiv(hour, 24), d -> {
+            long[] empty = new long[24];
+            Arrays.fill(empty, -1);
+            return empty;
+        });
+        int slot = Math.floorMod(hour, 24);
+        if (positions[slot] >= 0) {
+            segments.get(segmentOf(positions[slot])).live--;
+        }
+        positions[slot] = position;
+        segments.get(segmentOf(position)).live++;
+    }
+
+    private long position(Series series, long hour) {
+        long[] positions = series.days.get(Math.floorDiv(hour, 24));
+        return positions != null ? positions[Math.floorMod(hour, 24)] : -1;
+    }
+
+    private double valueAt(long position) {
+        return segments.get(segmentOf(position)).buffer.getDouble(recordOf(position) * RECORD_BYTES + 8);
+    }
+
+    // Pozycja rekordu: numer segmentu w starszych 32 bitach, numer rekordu w młodszych
+    private static long position(int segment, int record) {
+        return ((long) segment << 32) | record;
+    }
+
+    private static int segmentOf(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int recordOf(long position) {
+        return (int) position;
+    }
+
+    // Przegląda segment przy otwarciu; koniec danych to pierwszy rekord z id 0 (plik jest wstępnie wyzerowany)
+    private void scan(Segment segment) {
+        int capacity = segment.buffer.capacity() / RECORD_BYTES;
+        while (segment.records < capacity) {
+            int offset = segment.records * RECORD_BYTES;
+            int id = segment.buffer.getInt(offset);
+            if (id <= 0 || id > seriesById.size()) {
+                break;
+            }
+            segment.records++;
+            index(seriesById.get(id - 1), segment.buffer.getInt(offset + 4), position(segment.number, segment.records - 1));
+        }
+    }
+
+    private Segment newSegment() throws IOException {
+        int number = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        Path path = directory.resolve(String.format("seg-%06d.dat", number));
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength((long) recordsPerSegment * RECORD_BYTES);
+        }
+        Segment segment = map(path, number);
+        segments.put(number, segment);
+        return segment;
+    }
+
+    private static boolean isFull(Segment segment) {
+        return segment.records >= segment.buffer.capacity() / RECORD_BYTES;
+    }
+
+    private static Segment map(Path path, int number) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        return new Segment(number, path, channel, buffer);
+    }
+
+    private Series seriesFor(String location, String variable) throws IOException {
+        String name = location + '|' + variable;
+        Series series = seriesByName.get(name);
+        if (series == null) {
+            series = new Series(seriesById.size() + 1, name);
+            // Słownik zapisujemy przed pierwszym rekordem serii, żeby po restarcie każdy rekord miał nazwę
+            seriesWriter.write(series.id + "\t" + name + "\n");
+            seriesWriter.flush();
+            seriesByName.put(name, series);
+            seriesById.add(series);
+        }
+        return series;
+    }
+
+    private void loadSeries() throws IOException {
+        Path file = directory.resolve(SERIES_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        byte[] content = Files.readAllBytes(file);
+        int end = content.length;
+        while (end > 0 && content[end - 1] != '\n') {
+            end--;
+        }
+        if (end < content.length) {
+            // Niedokończony ostatni wpis po awarii - odcinamy go, żeby następny wpis zaczynał się od nowej linii
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(end);
+            }
+        }
+        for (String line : new String(content, 0, end, StandardCharsets.UTF_8).split("\n")) {
+            int tab = line.indexOf('\t');
+            if (tab < 0) {
+                continue;
+            }
+            Series series = new Series(Integer.parseInt(line.substring(0, tab)), line.substring(tab + 1));
+            if (series.id != seriesById.size() + 1) {
+                break;
+            }
+            seriesByName.put(series.name, series);
+            seriesById.add(series);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.tomaszwejner.weatherapp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dwupoziomowy cache używany przez serwisy: L1 w pamięci procesu (LocalCache), L2 w Redisie (RedisCache).
+ * Odczyt sprawdza najpierw L1, a brakujące klucze pobiera jednym zapytaniem z Redisa
+ * i kopiuje do L1 z pozostałym czasem życia klucza. Zapis trafia do obu warstw z tym samym TTL.
+ *
+ * Pozostały czas życia kluczy (getAllWithTtl) pozwala serwisom odróżnić wpisy świeże od przeterminowanych
+ * (zob. CacheRefresher).
+ *
+ * Ustawienia L1 (AppConfig): weatherapp.cache.l1.maxEntries (domyślnie 2000),
+ * weatherapp.cache.l1.maxBytes (domyślnie 64 MB; 0 wyłącza L1).
+ */
+public class WeatherCache {
+
+    private static final WeatherCache SHARED = new WeatherCache(
+            new LocalCache(AppConfig.getInt("weatherapp.cache.l1.maxEntries", 2000),
+                    AppConfig.getLong("weatherapp.cache.l1.maxBytes", 64L * 1024 * 1024)),
+            RedisCache.shared());
+
+    private final LocalCache local;
+    private final RedisCache redis;
+
+    public WeatherCache(LocalCache local, RedisCache redis) {
+        this.local = local;
+        this.redis = redis;
+    }
+
+    // Cache współdzielony przez wszystkie serwisy w procesie
+    public static WeatherCache shared() {
+        return SHARED;
+    }
+
+    public String get(String key) {
+        return getAll(List.of(key)).get(0);
+    }
+
+    // Zwraca wartości w kolejności kluczy (null dla braków)
+    public List<String> getAll(List<String> keys) {
+        List<RedisCache.TimedValue> timed = getAllWithTtl(keys);
+        List<String> values = new ArrayList<>(timed.size());
+        for (RedisCache.TimedValue value : timed) {
+            values.add(value != null ? value.value() : null);
+        }
+        return values;
+    }
+
+    // Jak getAll, ale z pozostałym czasem życia każdego klucza
+    public List<RedisCache.TimedValue> getAllWithTtl(List<String> keys) {
+        return getAllWithTtl(keys, null);
+    }
+
+    /**
+     * Jak getAllWithTtl, z rodzajem zapytania w metrykach trafień - np. prognoza i historia
+     * czytają te same klucze day:, a ich skuteczność cache liczymy osobno (zob. Metrics.cacheResult).
+     */
+    public List<RedisCache.TimedValue> getAllWithTtl(List<String> keys, String prefix) {
+        List<RedisCache.TimedValue> values = new ArrayList<>(keys.size());
+        List<String> missingKeys = new ArrayList<>();
+        List<Integer> missingIndexes = new ArrayList<>();
+
+        for (int i = 0; i < keys.size(); i++) {
+            RedisCache.TimedValue value = local.getWithTtl(keys.get(i));
+            values.add(value);
+            Metrics.cacheResult("l1", prefix, keys.get(i), value != null ? "hit" : "miss");
+            if (value == null) {
+                missingKeys.add(keys.get(i));
+                missingIndexes.add(i);
+            }
+        }
+
+        if (!missingKeys.isEmpty()) {
+            List<RedisCache.TimedValue> fromRedis = redis.getAllWithTtl(missingKeys, prefix);
+            for (int i = 0; i < missingKeys.size(); i++) {
+                RedisCache.TimedValue timed = fromRedis.get(i);
+                if (timed != null) {
+                    values.set(missingIndexes.get(i), timed);
+                    local.put(missingKeys.get(i), timed.value(), timed.ttlMillis());
+                }
+            }
+        }
+        return values;
+    }
+
+    public void set(String key, int ttlSeconds, String value) {
+        local.put(key, value, ttlSeconds * 1000L);
+        redis.set(key, ttlSeconds, value);
+    }
+
+    public void setAll(Map<String, String> values, int ttlSeconds) {
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            local.put(entry.getKey(), entry.getValue(), ttlSeconds * 1000L);
+        }
+        redis.setAll(values, ttlSeconds);
+    }
+}
@@ -1,17 +1,22 @@
 package com.tomaszwejner.weatherapp;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.stage.Stage;
 
 import java.io.IOException;
 import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -69,11 +74,28 @@ public class WeatherController {
     private final GeoCodingService geoCodingService = new GeoCodingService();
     private final WeatherService weatherService = new WeatherService();
 
+    // Okna wykresów (szablony FXML wczytywane w tle, okna używane ponownie)
+    private final ChartWindows chartWindows = new ChartWindows();
+
+    // Ostatni pobrany wynik i nazwa miejsca (źródło danych dla wykresów)
+    private HourlyWeather lastWeather;
+    private String lastCityName;
+
+    // Numer najnowszego zapytania - wyniki starszych kliknięć są ignorowane
+    private final AtomicLong requestGeneration = new AtomicLong();
+    private final Queue<CompletableFuture<?>> pendingRequests = new ConcurrentLinkedQueue<>();
+
+    // Wynik pobrania pogody: typowane dane (null przy błędzie) i tekst do wyświetlenia
+    private record WeatherOutcome(HourlyWeather weather, String text) {
+    }
+
     @FXML
     private ToggleGroup toggleGroup;
 
     @FXML
     public void initialize() {
+        chartWindows.preload("ChartWindow.fxml", "RainChart.fxml", "WindChart.fxml", "PressureChart.fxml");
+
         toggleGroup = new ToggleGroup();
         cityRadioButton.setToggleGroup(toggleGroup);
         coordsRadioButton.setToggleGroup(toggleGroup);
@@ -191,216 +213,187 @@ public class WeatherController {
     //Pobierz pogodę
     @FXML
     private void onGetWeatherClicked() {
-        try {
-            List<String> selectedParameters = getSelectedParameters();
-
-            boolean forecast = forecastCheckbox.isSelected();
-            boolean historical = historicalCheckbox.isSelected();
-            int forecastDays = forecastDaysComboBox.getValue();
-
-            if (cityRadioButton.isSelected()) {
-                String city = cityTextField.getText();
-                if (city == null || city.isEmpty()) {
-                    resultLabel.setText("Podaj nazwę miasta lub zmień tryb na współrzędne.");
-                    return;
-                }
-
-                Coordinates coords = geoCodingService.getCoordinates(city);
-                String weather;
+        List<String> selectedParameters = getSelectedParameters();
+
+        boolean forecast = forecastCheckbox.isSelected();
+        boolean historical = historicalCheckbox.isSelected();
+        int forecastDays = forecastDaysComboBox.getValue();
+        int pastDays = historicalDaysComboBox.getValue();
+
+        CompletableFuture<Coordinates> coordsFuture;
+        CompletableFuture<String> nameFuture;   // nazwa miejsca do tytułów wykresów
+        Function<String, String> locationLabel; // opis miejsca w nagłówku wyniku
+
+        if (cityRadioButton.isSelected()) {
+            String city = cityTextField.getText();
+            if (city == null || city.isEmpty()) {
+                resultLabel.setText("Podaj nazwę miasta lub zmień tryb na współrzędne.");
+                return;
+            }
 
-                if (historical) {
-                    int pastDays = historicalDaysComboBox.getValue();
-                    weather = weatherService.getHistoricalWeather(coords.latitude, coords.longitude, selectedParameters, pastDays);
+            cancelPendingRequests();
+            coordsFuture = geoCodingService.getCoordinatesAsync(city);
+            nameFuture = CompletableFuture.completedFuture(city);
+            locationLabel = name -> city;
 
-                    resultLabel.setText("Ostatnie " + pastDays + " dni dla " + city + ":\n" + weather);
-                }
-else if (forecast) {
-                    LocalDate today = LocalDate.now();
-                    LocalDate endDate = today.plusDays(forecastDays);
-                    String startDateStr = getFormattedDate(today);
-                    String endDateStr = getFormattedDate(endDate);
-
-                    weather = weatherService.getWeatherForecast(coords.latitude, coords.longitude, selectedParameters, startDateStr, endDateStr);
-                    resultLabel.setText("Prognoza pogody dla " + city + " na " + forecastDays + " dni:\n" + weather);
-                } else {
-                    weather = weatherService.getCurrentWeather(coords.latitude, coords.longitude, selectedParameters);
-                    resultLabel.setText("Pogoda dla " + city + ":\n" + weather);
-                }
+        } else if (coordsRadioButton.isSelected()) {
+            String latText = latitudeTextField.getText();
+            String lonText = longitudeTextField.getText();
 
-            } else if (coordsRadioButton.isSelected()) {
-                String latText = latitudeTextField.getText();
-                String lonText = longitudeTextField.getText();
-
-                if (latText == null || latText.isEmpty() || lonText == null || lonText.isEmpty()) {
-                    resultLabel.setText("Podaj szerokość i długość geograficzną.");
-                    return;
-                }
+            if (latText == null || latText.isEmpty() || lonText == null || lonText.isEmpty()) {
+                resultLabel.setText("Podaj szerokość i długość geograficzną.");
+                return;
+            }
 
-                double lat, lon;
-                try {
-                    lat = Double.parseDouble(latText);
-                    lon = Double.parseDouble(lonText);
-                } catch (NumberFormatException e) {
-                    resultLabel.setText("Szerokość i długość muszą być liczbami.");
-                    return;
-                }
+            double lat, lon;
+            try {
+                lat = Double.parseDouble(latText);
+                lon = Double.parseDouble(lonText);
+            } catch (NumberFormatException e) {
+                resultLabel.setText("Szerokość i długość muszą być liczbami.");
+                return;
+            }
 
-                String cityName = "Nieznana lokalizacja";
-                try {
-                    cityName = geoCodingService.getCityName(lat, lon);
-                } catch (Exception e) {
-                    System.err.println("Błąd reverse geocoding: " + e.getMessage());
-                }
+            // Reverse geocoding działa równolegle z pobieraniem pogody
+            cancelPendingRequests();
+            coordsFuture = CompletableFuture.completedFuture(new Coordinates(lat, lon));
+            nameFuture = geoCodingService.getCityNameAsync(lat, lon).exceptionally(e -> {
+                System.err.println("Błąd reverse geocoding: " + unwrap(e).getMessage());
+                return "Nieznana lokalizacja";
+            });
+            locationLabel = name -> "współrzędnych: " + lat + ", " + lon + " (" + name + ")";
+        } else {
+            return;
+        }
 
-                String weather;
+        long generation = requestGeneration.incrementAndGet();
+        resultLabel.setText("Pobieranie danych...");
 
-                if (historical) {
-                    int pastDays = historicalDaysComboBox.getValue();
+        CompletableFuture<WeatherOutcome> weatherFuture = coordsFuture.thenCompose(coords -> {
+            // Nie zaczynamy pobierania, jeśli w międzyczasie przyszło nowsze kliknięcie
+            if (generation != requestGeneration.get()) {
+                throw new CancellationException();
+            }
+            CompletableFuture<WeatherOutcome> fetch = fetchWeatherAsync(coords, selectedParameters, forecast, historical, forecastDays, pastDays);
+            pendingRequests.add(fetch);
+            return fetch;
+        });
 
-                    weather = weatherService.getHistoricalWeather(lat, lon, selectedParameters, pastDays);
+        pendingRequests.add(coordsFuture);
+        pendingRequests.add(nameFuture);
+        pendingRequests.add(weatherFuture);
+
+        weatherFuture.thenCombine(nameFuture, (outcome, cityName) -> {
+            String label = locationLabel.apply(cityName);
+            String header;
+            if (historical) {
+                header = "Ostatnie " + pastDays + " dni dla " + label + ":\n";
+            } else if (forecast) {
+                header = "Prognoza pogody dla " + label + " na " + forecastDays + " dni:\n";
+            } else {
+                header = "Pogoda dla " + label + ":\n";
+            }
 
-                    resultLabel.setText("Ostatnie " + pastDays + " dni dla współrzędnych: " + lat + ", " + lon + " (" + cityName + "):\n" + weather);
-                }
- else if (forecast) {
-                    LocalDate today = LocalDate.now();
-                    LocalDate endDate = today.plusDays(forecastDays);
-                    String startDateStr = getFormattedDate(today);
-                    String endDateStr = getFormattedDate(endDate);
-
-                    weather = weatherService.getWeatherForecast(lat, lon, selectedParameters, startDateStr, endDateStr);
-                    resultLabel.setText("Prognoza pogody dla współrzędnych: " + lat + ", " + lon +
-                            " (" + cityName + ") na " + forecastDays + " dni:\n" + weather);
-                } else {
-                    weather = weatherService.getCurrentWeather(lat, lon, selectedParameters);
-                    resultLabel.setText("Pogoda dla współrzędnych: " + lat + ", " + lon +
-                            " (" + cityName + ")\n" + weather);
-                }
+            Platform.runLater(() -> {
+                // Wynik stosujemy tylko, jeśli to wciąż najnowsze zapytanie
+                if (generation != requestGeneration.get()) return;
+                resultLabel.setText(header + withCacheNote(outcome.text(), outcome.weather()));
+
+                // Zapamiętujemy typowany wynik - z niego powstają dane do wykresów
+                lastWeather = outcome.weather();
+                lastCityName = cityName;
+            });
+            return null;
+        }).exceptionally(e -> {
+            Throwable cause = unwrap(e);
+            if (!(cause instanceof CancellationException)) {
+                cause.printStackTrace();
+                Platform.runLater(() -> {
+                    if (generation != requestGeneration.get()) return;
+                    resultLabel.setText("Błąd: " + cause.getMessage());
+                });
             }
-        } catch (Exception e) {
-            resultLabel.setText("Błąd: " + e.getMessage());
-            e.printStackTrace();
-        }
+            return null;
+        });
     }
 
-    //Tworzenie wektora danych potrzebnych do wykresu
-    private WeatherData parseWeatherDataFromResultLabel() {
-        String text = resultLabel.getText();
-        List<String> dates = new ArrayList<>();
-        List<Double> temps = new ArrayList<>();
-        List<Double> rains = new ArrayList<>();
-        List<Double> winds = new ArrayList<>();
-        List<Double> pressures = new ArrayList<>();
-
-        String[] lines = text.split("\\r?\\n");
-
-        String cityName = "Nieznane miasto";
-        if (lines.length > 0) {
-            String header = lines[0];
-
-            if (header.toLowerCase().startsWith("prognoza pogody dla")) {
-                int start = header.toLowerCase().indexOf("dla") + 4;
-                int end = header.toLowerCase().lastIndexOf(" na ");
-                if (start > 3 && end > start) {
-                    cityName = header.substring(start, end).trim();
-                }
-            } else if (header.toLowerCase().startsWith("ostatnie")) {
-                int start = header.toLowerCase().indexOf("dla") + 4;
-                int end = header.indexOf(":", start);
-                if (start > 3 && end > start) {
-                    cityName = header.substring(start, end).trim();
-                } else {
-                    cityName = header.substring(start).trim(); // fallback jeśli brak ':'
-                }
-            }
+    // Pobiera pogodę w wybranym trybie; błąd pobierania zamieniamy na komunikat dla użytkownika
+    private CompletableFuture<WeatherOutcome> fetchWeatherAsync(Coordinates coords, List<String> parameters,
+                                                                boolean forecast, boolean historical,
+                                                                int forecastDays, int pastDays) {
+        if (historical) {
+            String noData = "Brak danych historycznych dla wybranych parametrów.";
+            return weatherService.getHistoricalWeatherAsync(coords.latitude, coords.longitude, parameters, pastDays)
+                    .thenApply(weather -> new WeatherOutcome(weather, WeatherFormatter.formatHourly(weather, noData)))
+                    .exceptionallyCompose(e -> unwrap(e) instanceof IOException
+                            ? storedHistoryAsync(coords, parameters, pastDays, e, noData)
+                            : CompletableFuture.failedFuture(e))
+                    .exceptionally(e -> failedOutcome(e, "Błąd podczas pobierania danych historycznych."));
+        } else if (forecast) {
+            LocalDate today = LocalDate.now(ZoneOffset.UTC);
+            LocalDate endDate = today.plusDays(forecastDays);
+            String startDateStr = getFormattedDate(today);
+            String endDateStr = getFormattedDate(endDate);
+
+            return weatherService.getWeatherForecastAsync(coords.latitude, coords.longitude, parameters, startDateStr, endDateStr)
+                    .handle((weather, e) -> e == null
+                            ? new WeatherOutcome(weather, WeatherFormatter.formatHourly(weather, "Brak danych prognozy pogodowej dla wybranych parametrów."))
+                            : failedOutcome(e, "Błąd podczas pobierania prognozy pogody. Jeśli pobierasz prognozę pogody, spróbuj zmniejszając liczbę dni"));
+        } else {
+            return weatherService.getCurrentWeatherAsync(coords.latitude, coords.longitude, parameters)
+                    .handle((weather, e) -> e == null
+                            ? new WeatherOutcome(weather, WeatherFormatter.formatCurrent(weather))
+                            : failedOutcome(e, "Błąd podczas pobierania pogody."));
         }
+    }
 
-        for (int i = 0; i < lines.length; i++) {
-            String line = lines[i].trim();
-
-            // Znajdź linie z datą
-            if (line.matches("\\d{1,2} \\p{L}+ \\d{2}:\\d{2}:?")) {
-                dates.add(line.replace(":", ""));
-
-                // Znajdź indeks kolejnej daty lub koniec tablicy
-                int nextDateIndex = lines.length;
-                for (int k = i + 1; k < lines.length; k++) {
-                    if (lines[k].trim().matches("\\d{1,2} \\p{L}+ \\d{2}:\\d{2}:?")) {
-                        nextDateIndex = k;
-                        break;
-                    }
-                }
-
-                // Przeszukaj linie między i+1 a nextDateIndex - 1
-                double temp = 0.0;
-                double rain = 0.0;
-                double wind = 0.0;
-                double press = 0.0;
-
-                for (int j = i + 1; j < nextDateIndex; j++) {
-                    String currentLine = lines[j].trim().toLowerCase();
-
-                    // Temperatura
-                    if (currentLine.startsWith("temperatura") && !currentLine.startsWith("temperatura gleby")) {
-                        String tempStr = currentLine.replaceAll("[^0-9.,-]", "").replace(',', '.');
-                        try {
-                            temp = Double.parseDouble(tempStr);
-                        } catch (NumberFormatException e) {
-                            System.out.println("Nie udało się sparsować temperatury: " + tempStr);
-                        }
-                    }
-
-                    // Opady
-                    if (currentLine.startsWith("opad")) {
-                        String rainStr = currentLine.replaceAll("[^0-9.,-]", "").replace(',', '.');
-                        if (rainStr.isEmpty()) {
-                            rain = 0.0;
-                        } else {
-                            try {
-                                rain = Double.parseDouble(rainStr);
-                            } catch (NumberFormatException e) {
-                                System.out.println("Nie udało się sparsować opadów: " + rainStr);
-                            }
-                        }
+    // Bez sieci historia (i wykresy) pochodzi z lokalnego magazynu; gdy ten nic nie ma, zostaje pierwotny błąd
+    private CompletableFuture<WeatherOutcome> storedHistoryAsync(Coordinates coords, List<String> parameters,
+                                                                 int pastDays, Throwable error, String noData) {
+        return weatherService.getStoredWeatherAsync(coords.latitude, coords.longitude, parameters, pastDays)
+                .thenApply(weather -> {
+                    if (weather.isEmpty()) {
+                        throw new CompletionException(unwrap(error));
                     }
+                    System.err.println("Brak połączenia (" + unwrap(error) + ") - historia z lokalnego magazynu");
+                    return new WeatherOutcome(weather, WeatherFormatter.formatHourly(weather, noData)
+                            + " (brak połączenia - dane z lokalnego magazynu)\n");
+                });
+    }
 
-                    // Wiatr
-                    if (currentLine.startsWith("wiatr")) {
-                        String windStr = currentLine.replaceAll("[^0-9.,-]", "").replace(',', '.');
-                        try {
-                            wind = Double.parseDouble(windStr);
-                        } catch (NumberFormatException e) {
-                            System.out.println("Nie udało się sparsować wiatru: " + windStr);
-                        }
-                    }
-                    // Ciśnienie
-                    if (currentLine.startsWith("ciśnienie")) {
-                        String pressStr = currentLine.replaceAll("[^0-9.,-]", "").replace(',', '.');
-                        try {
-                            press = Double.parseDouble(pressStr);
-                        } catch (NumberFormatException e) {
-                            System.out.println("Nie udało się sparsować cisnienia: " + pressStr);
-                        }
-                    }
-                }
+    private WeatherOutcome failedOutcome(Throwable error, String message) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof CancellationException cancelled) {
+            throw cancelled;
+        }
+        cause.printStackTrace();
+        return new WeatherOutcome(null, message);
+    }
 
-                temps.add(temp);
-                rains.add(rain);
-                winds.add(wind);
-                pressures.add(press);
-            }
+    // Anuluje zapytania poprzedniego kliknięcia (przerywa ich wątki)
+    private void cancelPendingRequests() {
+        CompletableFuture<?> pending;
+        while ((pending = pendingRequests.poll()) != null) {
+            pending.cancel(true);
         }
+    }
 
-        double currentTemp = temps.isEmpty() ? 0.0 : temps.get(0);
-        String description = "Pogoda z resultLabel";
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
 
-        WeatherData weatherData = new WeatherData(currentTemp, description, dates, temps, rains, winds, pressures);
-        weatherData.setCityName(cityName);
-        if (!dates.isEmpty()) {
-            weatherData.setStartDate(dates.get(0));
-            weatherData.setEndDate(dates.get(dates.size() - 1));
-        }
+    // Dopisuje informację o tym, że wynik pochodzi z cache
+    private String withCacheNote(String text, HourlyWeather weather) {
+        return weather != null && weather.isFromCache() ? text + " (z cache)\n" : text;
+    }
 
-        return weatherData;
+    //Tworzenie wektora danych potrzebnych do wykresu (bezpośrednio z ostatniego wyniku)
+    private WeatherData getLastWeatherData() {
+        if (lastWeather == null) {
+            return new WeatherData(Double.NaN, "Brak danych", new ArrayList<>(), new ArrayList<>(),
+                    new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        }
+        return WeatherData.fromHourly(lastWeather, lastCityName);
     }
 
 
@@ -408,29 +401,23 @@ else if (forecast) {
     //Wykres temperatury
     @FXML
     public void handleShowChart() {
-        WeatherData data = parseWeatherDataFromResultLabel();
+        WeatherData data = getLastWeatherData();
         showChartWithData(data);
     }
 
     private void showChartWithData(WeatherData data) {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/tomaszwejner/weatherapp/ChartWindow.fxml"));
-            Parent root = loader.load();
-
-            ChartWindowController chartController = loader.getController();
-            chartController.setMetadata(data.getCityName(), data.getStartDate(), data.getEndDate());
-
-            if (data == null || !data.hasForecast()) {
-                System.out.println("Brak danych do wyświetlenia wykresu.");
-            } else {
-                chartController.addSeries("Prognoza temperatury", data.getForecastDates(), data.getForecastTemperatures());
-            }
-
-            Stage stage = new Stage();
-            stage.setTitle("Wykres pogody");
-            stage.setScene(new Scene(root));
-            stage.show();
+            chartWindows.<ChartWindowController>show("ChartWindow.fxml", "Wykres pogody", chartController -> {
+                chartController.setMetadata(data.getCityName(), data.getStartDate(), data.getEndDate());
+                chartController.setWeather(lastWeather);
+                chartController.clearSeries(); // okno mogło już pokazywać poprzedni wynik
 
+                if (!data.hasForecast()) {
+                    System.out.println("Brak danych do wyświetlenia wykresu.");
+                } else {
+                    chartController.addSeries("Prognoza temperatury", data.getForecastEpochHours(), data.getForecastTemperatures());
+                }
+            });
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -438,21 +425,14 @@ else if (forecast) {
 
     @FXML
     public void handleShowRainChart() {
-        WeatherData data = parseWeatherDataFromResultLabel();
+        WeatherData data = getLastWeatherData();
 
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/tomaszwejner/weatherapp/RainChart.fxml"));
-            Parent root = loader.load();
-
-            RainChartWindowController rainController = loader.getController();
-            rainController.setMetadata(data.getCityName(), data.getStartDate(), data.getEndDate());
-            rainController.addSeries(data.getForecastDates(), data.getForecastRains());
-
-            Stage stage = new Stage();
-            stage.setTitle("Wykres opadów");
-            stage.setScene(new Scene(root));
-            stage.show();
-
+            chartWindows.<RainChartWindowController>show("RainChart.fxml", "Wykres opadów", rainController -> {
+                rainController.setMetadata(data.getCityName(), data.getStartDate(), data.getEndDate());
+                rainController.setWeather(lastWeather);
+                rainController.addSeries(data.getForecastEpochHours(), data.getForecastRains());
+            });
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -460,20 +440,13 @@ else if (forecast) {
 
     @FXML
     private void handleShowWindChart() {
-        WeatherData data = parseWeatherDataFromResultLabel();
+        WeatherData data = getLastWeatherData();
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/tomaszwejner/weatherapp/WindChart.fxml"));
-            Parent root = loader.load();
-
-            WindChartWindowController controller = loader.getController();
-            controller.setMetadata(data.getCityName(), data.getStartDate(), data.getEndDate());
-            controller.setWindData(data.getForecastDates(), data.getForecastWinds());
-
-            Stage stage = new Stage();
-            stage.setTitle("Wykres prędkości wiatru");
-            stage.setScene(new Scene(root));
-            stage.show();
-
+            chartWindows.<WindChartWindowController>show("WindChart.fxml", "Wykres prędkości wiatru", controller -> {
+                controller.setMetadata(data.getCityName(), data.getStartDate(), data.getEndDate());
+                controller.setWeather(lastWeather);
+                controller.setWindData(data.getForecastEpochHours(), data.getForecastWinds());
+            });
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -481,20 +454,13 @@ else if (forecast) {
 
     @FXML
     private void handleShowPressureChart() {
-        WeatherData data = parseWeatherDataFromResultLabel();
+        WeatherData data = getLastWeatherData();
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/tomaszwejner/weatherapp/PressureChart.fxml"));
-            Parent root = loader.load();
-
-            PressureChartWindowController controller = loader.getController();
-            controller.setMetadata(data.getCityName(), data.getStartDate(), data.getEndDate());
-            controller.setPressData(data.getForecastDates(), data.getForecastPressures());
-
-            Stage stage = new Stage();
-            stage.setTitle("Wykres ciśnienia");
-            stage.setScene(new Scene(root));
-            stage.show();
-
+            chartWindows.<PressureChartWindowController>show("PressureChart.fxml", "Wykres ciśnienia", controller -> {
+                controller.setMetadata(data.getCityName(), data.getStartDate(), data.getEndDate());
+                controller.setWeather(lastWeather);
+                controller.setPressData(data.getForecastEpochHours(), data.getForecastPressures());
+            });
         } catch (IOException e) {
             e.printStackTrace();
         }
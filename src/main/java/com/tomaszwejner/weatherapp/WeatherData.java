@@ -1,5 +1,6 @@
 package com.tomaszwejner.weatherapp;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class WeatherData {
@@ -15,6 +16,7 @@ public class WeatherData {
     private final List<Double> forecastRains;
     private final List<Double> forecastWinds;
     private final List<Double> forecastPressures;  // nowe pole: ciśnienie
+    private long[] forecastEpochHours = new long[0]; // godziny od epoki odpowiadające forecastDates (oś czasu wykresów)
 
     public WeatherData(double temperature, String description,
                        List<String> forecastDates,
@@ -31,6 +33,48 @@ public class WeatherData {
         this.forecastPressures = forecastPressures;
     }
 
+    /**
+     * Tworzy dane do wykresów bezpośrednio z typowanego wyniku WeatherService.
+     * Parametry, które nie zostały pobrane, mają wartości NaN.
+     *
+     * @param weather  wynik zapytania
+     * @param cityName nazwa miejsca wyświetlana w tytułach wykresów
+     */
+    public static WeatherData fromHourly(HourlyWeather weather, String cityName) {
+        HourLabels labels = HourLabels.display();
+        List<String> dates = new ArrayList<>(weather.size());
+        for (int i = 0; i < weather.size(); i++) {
+            dates.add(labels.format(weather.getEpochHour(i)));
+        }
+
+        List<Double> temps = columnAsList(weather, "temperature_2m");
+        double currentTemp = weather.hasCurrent("temperature_2m")
+                ? weather.getCurrent("temperature_2m")
+                : (temps.isEmpty() ? Double.NaN : temps.get(0));
+
+        WeatherData weatherData = new WeatherData(currentTemp, "Open-Meteo", dates, temps,
+                columnAsList(weather, "precipitation"),
+                columnAsList(weather, "windspeed_10m"),
+                columnAsList(weather, "surface_pressure"));
+        weatherData.setCityName(cityName);
+        weatherData.setForecastEpochHours(weather.getEpochHours());
+        if (!dates.isEmpty()) {
+            weatherData.setStartDate(dates.get(0));
+            weatherData.setEndDate(dates.get(dates.size() - 1));
+        }
+        return weatherData;
+    }
+
+    // Kolumna parametru jako lista (NaN dla każdej godziny, gdy parametr nie był pobrany)
+    private static List<Double> columnAsList(HourlyWeather weather, String param) {
+        double[] column = weather.getColumn(param);
+        List<Double> values = new ArrayList<>(weather.size());
+        for (int i = 0; i < weather.size(); i++) {
+            values.add(column != null ? column[i] : Double.NaN);
+        }
+        return values;
+    }
+
     public String getCityName() {
         return cityName;
     }
@@ -43,6 +87,14 @@ public class WeatherData {
         return forecastDates;
     }
 
+    public long[] getForecastEpochHours() {
+        return forecastEpochHours;
+    }
+
+    public void setForecastEpochHours(long[] forecastEpochHours) {
+        this.forecastEpochHours = forecastEpochHours;
+    }
+
     public List<Double> getForecastTemperatures() {
         return forecastTemperatures;
     }
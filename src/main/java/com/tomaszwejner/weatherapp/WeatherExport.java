@@ -0,0 +1,264 @@
+package com.tomaszwejner.weatherapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Eksport pełnego wyniku HourlyWeather do pliku: wszystkie pobrane zmienne, oryginalne godziny
+ * i braki danych, zapisywane strumieniowo prosto z kolumn (bez przechodzenia przez wykres).
+ *
+ * Formaty (wybierane po rozszerzeniu pliku):
+ *  .csv    - CsvWeatherRenderer (braki jako puste pole)
+ *  .csv.gz - to samo, skompresowane gzip
+ *  .wxc    - binarny format kolumnowy (opis niżej), z odczytem przez readBinary
+ *
+ * Format .wxc (big-endian, DataOutputStream):
+ *  "WXC" + wersja (1 bajt), szerokość i długość (double), liczba godzin (int),
+ *  oś czasu: 0 + pierwsza godzina (long) dla kolejnych godzin albo 1 + wszystkie godziny (long),
+ *  liczba zmiennych (int), dla każdej: nazwa (UTF), mapa obecności wartości (bit na godzinę),
+ *  kodowanie i wartości obecnych godzin:
+ *   0 - double,
+ *   1 - liczba miejsc po przecinku (bajt) i różnice kolejnych wartości przeskalowanych do liczb
+ *       całkowitych jako zmienna liczba bajtów (zig-zag) - zwykle 1 bajt na godzinę,
+ *  na końcu wartości "aktualne": liczba (int) i pary nazwa (UTF), wartość (double).
+ * Kodowanie 1 jest wybierane tylko wtedy, gdy odtwarza każdą wartość bit w bit.
+ */
+public final class WeatherExport {
+
+    public enum Format {
+        CSV(".csv"),
+        CSV_GZIP(".csv.gz"),
+        BINARY(".wxc");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        // Format dla nazwy pliku; null, gdy rozszerzenie nie pasuje do żadnego
+        public static Format forFileName(String fileName) {
+            String name = fileName.toLowerCase(Locale.ROOT);
+            if (name.endsWith(CSV_GZIP.extension)) {
+                return CSV_GZIP;
+            }
+            if (name.endsWith(CSV.extension)) {
+                return CSV;
+            }
+            return name.endsWith(BINARY.extension) ? BINARY : null;
+        }
+    }
+
+    private static final byte[] MAGIC = {'W', 'X', 'C'};
+    private static final int VERSION = 1;
+
+    private static final int TIME_CONSECUTIVE = 0;
+    private static final int TIME_EXPLICIT = 1;
+
+    private static final int VALUES_DOUBLE = 0;
+    private static final int VALUES_SCALED = 1;
+
+    private static final CsvWeatherRenderer CSV_RENDERER = new CsvWeatherRenderer();
+
+    private WeatherExport() {
+    }
+
+    /**
+     * Zapisuje wynik do pliku w formacie wynikającym z rozszerzenia.
+     *
+     * @throws IllegalArgumentException dla nieznanego rozszerzenia
+     */
+    public static void export(HourlyWeather weather, Path file) throws IOException {
+        Format format = Format.forFileName(file.getFileName().toString());
+        if (format == null) {
+            throw new IllegalArgumentException("Nieznany format pliku: " + file.getFileName());
+        }
+        try (OutputStream out = Files.newOutputStream(file)) {
+            write(weather, format, out);
+        }
+    }
+
+    // Zapisuje wynik do strumienia (strumień nie jest zamykany)
+    public static void write(HourlyWeather weather, Format format, OutputStream out) throws IOException {
+        switch (format) {
+            case CSV -> CSV_RENDERER.render(weather, out);
+            case CSV_GZIP -> {
+                // Najszybszy poziom kompresji: plik ok. 30% większy, zapis 2-3 razy szybszy
+                GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024) {
+                    {
+                        def.setLevel(Deflater.BEST_SPEED);
+                    }
+                };
+                CSV_RENDERER.render(weather, gzip);
+                gzip.finish();
+            }
+            case BINARY -> writeBinary(weather, out);
+        }
+        out.flush();
+    }
+
+    private static void writeBinary(HourlyWeather weather, OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+        int rows = weather.size();
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        out.writeDouble(weather.getLatitude());
+        out.writeDouble(weather.getLongitude());
+        out.writeInt(rows);
+
+        long[] hours = weather.getEpochHours();
+        if (isConsecutive(hours)) {
+            out.writeByte(TIME_CONSECUTIVE);
+            out.writeLong(rows > 0 ? hours[0] : 0);
+        } else {
+            out.writeByte(TIME_EXPLICIT);
+            for (long hour : hours) {
+                out.writeLong(hour);
+            }
+        }
+
+        out.writeInt(weather.getParameters().size());
+        byte[] presence = new byte[(rows + 7) / 8];
+        for (String param : weather.getParameters()) {
+            double[] column = weather.getColumn(param);
+            out.writeUTF(param);
+
+            Arrays.fill(presence, (byte) 0);
+            for (int i = 0; i < rows; i++) {
+                if (!Double.isNaN(column[i])) {
+                    presence[i >> 3] |= (byte) (1 << (i & 7));
+                }
+            }
+            out.write(presence);
+
+            int decimals = ColumnCodec.scaledDecimals(column);
+            if (decimals < 0) {
+                out.writeByte(VALUES_DOUBLE);
+                for (double value : column) {
+                    if (!Double.isNaN(value)) {
+                        out.writeDouble(value);
+                    }
+                }
+            } else {
+                out.writeByte(VALUES_SCALED);
+                out.writeByte(decimals);
+                double scale = Math.pow(10, decimals);
+                long previous = 0;
+                for (double value : column) {
+                    if (!Double.isNaN(value)) {
+                        long scaled = Math.round(value * scale);
+                        ColumnCodec.writeVarLong(out, scaled - previous);
+                        previous = scaled;
+                    }
+                }
+            }
+        }
+
+        Map<String, Double> current = weather.getCurrentValues();
+        out.writeInt(current.size());
+        for (Map.Entry<String, Double> entry : current.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeDouble(entry.getValue());
+        }
+        out.flush();
+    }
+
+    /**
+     * Odczytuje plik .wxc zapisany przez write.
+     *
+     * @throws IOException gdy dane nie są w formacie .wxc albo są uszkodzone
+     */
+    public static HourlyWeather readBinary(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 64 * 1024));
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("To nie jest plik .wxc");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Nieobsługiwana wersja pliku .wxc: " + version);
+        }
+        double latitude = in.readDouble();
+        double longitude = in.readDouble();
+        int rows = in.readInt();
+
+        long[] hours = new long[rows];
+        int timeEncoding = in.readUnsignedByte();
+        if (timeEncoding == TIME_CONSECUTIVE) {
+            long first = in.readLong();
+            for (int i = 0; i < rows; i++) {
+                hours[i] = first + i;
+            }
+        } else if (timeEncoding == TIME_EXPLICIT) {
+            for (int i = 0; i < rows; i++) {
+                hours[i] = in.readLong();
+            }
+        } else {
+            throw new IOException("Nieznane kodowanie osi czasu: " + timeEncoding);
+        }
+
+        int params = in.readInt();
+        Map<String, double[]> columns = new LinkedHashMap<>();
+        byte[] presence = new byte[(rows + 7) / 8];
+        for (int p = 0; p < params; p++) {
+            String param = in.readUTF();
+            in.readFully(presence);
+            double[] column = new double[rows];
+
+            int encoding = in.readUnsignedByte();
+            double scale = 1;
+            if (encoding == VALUES_SCALED) {
+                scale = Math.pow(10, in.readUnsignedByte());
+            } else if (encoding != VALUES_DOUBLE) {
+                throw new IOException("Nieznane kodowanie kolumny " + param + ": " + encoding);
+            }
+            long previous = 0;
+            for (int i = 0; i < rows; i++) {
+                if ((presence[i >> 3] & (1 << (i & 7))) == 0) {
+                    column[i] = Double.NaN;
+                } else if (encoding == VALUES_DOUBLE) {
+                    column[i] = in.readDouble();
+                } else {
+                    previous += ColumnCodec.readVarLong(in);
+                    column[i] = previous / scale;
+                }
+            }
+            columns.put(param, column);
+        }
+
+        Map<String, Double> current = new HashMap<>();
+        int currentCount = in.readInt();
+        for (int i = 0; i < currentCount; i++) {
+            current.put(in.readUTF(), in.readDouble());
+        }
+        return new HourlyWeather(latitude, longitude, hours, columns, current);
+    }
+
+    private static boolean isConsecutive(long[] hours) {
+        for (int i = 1; i < hours.length; i++) {
+            if (hours[i] != hours[i - 1] + 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,74 @@
+package com.tomaszwejner.weatherapp;
+
+// Klasa zamieniająca typowany wynik (HourlyWeather) na tekst wyświetlany w aplikacji
+public class WeatherFormatter {
+
+    // Metoda pomocnicza: zwraca polską etykietę dla danego parametru pogodowego
+    static String getLabelForParameter(String param) {
+        return switch (param) {
+            case "temperature_2m" -> "Temperatura";
+            case "relative_humidity_2m" -> "Wilgotność";
+            case "soil_temperature_0cm" -> "Temperatura gleby";
+            case "windspeed_10m" -> "Wiatr";
+            case "precipitation" -> "Opady";
+            case "surface_pressure" -> "Ciśnienie";
+            default -> param; // Jeśli brak dopasowania, zwraca oryginalną nazwę
+        };
+    }
+
+    // Metoda pomocnicza: zwraca jednostkę miary dla danego parametru pogodowego
+    static String getUnitForParameter(String param) {
+        return switch (param) {
+            case "temperature_2m" -> " °C";
+            case "relative_humidity_2m" -> "%";
+            case "wind_speed_10m" -> " km/h";
+            case "precipitation" -> " mm";
+            case "pressure_msl" -> " hPa";
+            default -> "";
+        };
+    }
+
+    /**
+     * Formatuje aktualną pogodę w kolejności: temperatura, wiatr, ciśnienie, opady, temperatura gleby.
+     *
+     * @param weather wynik z WeatherService.getCurrentWeather
+     * @return tekst do wyświetlenia
+     */
+    public static String formatCurrent(HourlyWeather weather) {
+        StringBuilder result = new StringBuilder();
+
+        if (weather.hasCurrent("temperature_2m")) {
+            result.append("Temperatura: ").append(weather.getCurrent("temperature_2m")).append(" °C\n");
+        }
+        if (weather.hasCurrent("windspeed_10m")) {
+            result.append("Prędkość wiatru: ").append(weather.getCurrent("windspeed_10m")).append(" km/h\n");
+        }
+        if (weather.hasCurrent("surface_pressure")) {
+            result.append("Ciśnienie: ").append(weather.getCurrent("surface_pressure")).append(" hPa\n");
+        }
+        if (weather.hasCurrent("precipitation")) {
+            result.append("Opady: ").append(weather.getCurrent("precipitation")).append(" mm\n");
+        }
+        if (weather.hasCurrent("soil_temperature_0cm")) {
+            result.append("Temperatura gleby: ").append(weather.getCurrent("soil_temperature_0cm")).append(" °C\n");
+        }
+
+        // Jeśli brak danych, zwracamy informację
+        if (result.isEmpty()) {
+            result.append("Brak danych pogodowych dla wybranych parametrów.");
+        }
+        return result.toString();
+    }
+
+    /**
+     * Formatuje dane godzinowe (prognoza lub historia): dla każdej godziny data i wartości parametrów.
+     * Do zapisu w innym formacie albo prosto do strumienia służy WeatherRenderer.
+     *
+     * @param weather      wynik z WeatherService
+     * @param emptyMessage komunikat, gdy API nie zwróciło danych godzinowych
+     * @return tekst do wyświetlenia
+     */
+    public static String formatHourly(HourlyWeather weather, String emptyMessage) {
+        return new TextWeatherRenderer(emptyMessage).renderToString(weather);
+    }
+}
@@ -0,0 +1,54 @@
+package com.tomaszwejner.weatherapp;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Zamienia wynik HourlyWeather na tekst w konkretnym formacie i zapisuje go strumieniowo
+ * do dowolnego Appendable (StringBuilder, Writer) albo OutputStream (UTF-8).
+ * Ta sama ścieżka służy oknu aplikacji, eksportowi i serwerowi HTTP.
+ *
+ * Implementacje są bezstanowe - jeden obiekt można współdzielić między wątkami.
+ */
+public interface WeatherRenderer {
+
+    void render(HourlyWeather weather, Appendable out) throws IOException;
+
+    // Wartość nagłówka Content-Type dla tego formatu
+    String contentType();
+
+    default void render(HourlyWeather weather, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        render(weather, writer);
+        writer.flush();
+    }
+
+    default String renderToString(HourlyWeather weather) {
+        StringBuilder out = new StringBuilder(64 + weather.size() * 32 * Math.max(1, weather.getParameters().size()));
+        try {
+            render(weather, out);
+        } catch (IOException e) {
+            // StringBuilder nie zgłasza IOException
+            throw new RuntimeException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Renderer dla nazwy formatu: text, csv albo json.
+     *
+     * @throws IllegalArgumentException dla nieznanego formatu
+     */
+    static WeatherRenderer forFormat(String format) {
+        return switch (format) {
+            case "text" -> new TextWeatherRenderer("Brak danych pogodowych dla wybranych parametrów.");
+            case "csv" -> new CsvWeatherRenderer();
+            case "json" -> new JsonWeatherRenderer();
+            default -> throw new IllegalArgumentException("Nieznany format: " + format);
+        };
+    }
+}
@@ -0,0 +1,355 @@
+package com.tomaszwejner.weatherapp;
+
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tryb bez okna: serwer HTTP zwracający dane pogodowe jako JSON.
+ * Korzysta z tych samych serwisów i tej samej warstwy cache co aplikacja JavaFX,
+ * ale nie odwołuje się do żadnej klasy JavaFX. Każde zapytanie jest obsługiwane
+ * na osobnym wątku wirtualnym.
+ *
+ * Uruchomienie: java -cp weatherapp.jar com.tomaszwejner.weatherapp.WeatherServer
+ *
+ * Endpointy (GET):
+ *  /api/current?lat=..&lon=..&params=temperature_2m,windspeed_10m   (albo city=.. zamiast lat/lon)
+ *  /api/forecast?lat=..&lon=..&params=..&start=yyyy-MM-dd&end=yyyy-MM-dd   (albo days=N od dzisiaj; najwyżej 16 dni)
+ *  /api/history?lat=..&lon=..&params=..&days=N
+ *  /api/stored?lat=..&lon=..&params=..&start=yyyy-MM-dd&end=yyyy-MM-dd   (albo days=N; tylko lokalny magazyn, bez sieci)
+ *    (dane pogodowe: format=json - domyślnie, csv albo text; zob. WeatherRenderer)
+ *  /api/geocode?city=..
+ *  /api/reverse?lat=..&lon=..
+ *  /health
+ *  /metrics   (metryki w formacie tekstowym Prometheusa)
+ *
+ * Ustawienia:
+ *  weatherapp.server.port    - port (domyślnie 8080)
+ *  weatherapp.server.backlog - długość kolejki połączeń (domyślnie 1024)
+ */
+public class WeatherServer {
+
+    private static final List<String> DEFAULT_PARAMETERS = List.of("temperature_2m");
+
+    private static final String JSON = "application/json; charset=utf-8";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final WeatherService weatherService;
+    private final GeoCodingService geoCodingService;
+
+    // Obsługa jednego endpointu: zapisuje odpowiedź do out i zwraca jej Content-Type
+    private interface Endpoint {
+        String handle(Map<String, String> query, Writer out) throws Exception;
+    }
+
+    // Endpoint zwracający mały obiekt JSON
+    private interface JsonEndpoint {
+        void handle(Map<String, String> query, JsonWriter json) throws Exception;
+    }
+
+    // Endpoint z danymi pogodowymi, zapisywanymi rendererem wybranym parametrem format
+    private interface WeatherEndpoint {
+        HourlyWeather load(Map<String, String> query) throws Exception;
+    }
+
+    // Błąd zwracany klientowi z konkretnym kodem HTTP
+    private static class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    public WeatherServer(InetSocketAddress address, WeatherService weatherService,
+                         GeoCodingService geoCodingService) throws IOException {
+        this.weatherService = weatherService;
+        this.geoCodingService = geoCodingService;
+        this.server = HttpServer.create(address, AppConfig.getInt("weatherapp.server.backlog", 1024));
+        server.setExecutor(executor);
+
+        server.createContext("/api/current", exchange -> handle(exchange, weather(this::current)));
+        server.createContext("/api/forecast", exchange -> handle(exchange, weather(this::forecast)));
+        server.createContext("/api/history", exchange -> handle(exchange, weather(this::history)));
+        server.createContext("/api/stored", exchange -> handle(exchange, weather(this::stored)));
+        server.createContext("/api/geocode", exchange -> handle(exchange, json(this::geocode)));
+        server.createContext("/api/reverse", exchange -> handle(exchange, json(this::reverse)));
+        server.createContext("/health", exchange -> handle(exchange, json((query, json) ->
+                json.beginObject().name("status").value("ok").endObject())));
+        server.createContext("/metrics", Metrics::handle);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = AppConfig.getInt("weatherapp.server.port", 8080);
+        WeatherServer server = new WeatherServer(new InetSocketAddress(port),
+                new WeatherService(), new GeoCodingService());
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+        System.out.println("Serwer pogodowy nasłuchuje na porcie " + server.getPort());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // Zatrzymuje serwer, czekając najwyżej podaną liczbę sekund na trwające zapytania
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private HourlyWeather current(Map<String, String> query) throws Exception {
+        Coordinates location = resolveLocation(query);
+        return weatherService.getCurrentWeather(location.latitude, location.longitude, parameters(query));
+    }
+
+    private HourlyWeather forecast(Map<String, String> query) throws Exception {
+        Coordinates location = resolveLocation(query);
+        LocalDate start;
+        LocalDate end;
+        if (query.containsKey("start") || query.containsKey("end")) {
+            start = date(query, "start");
+            end = date(query, "end");
+        } else {
+            start = LocalDate.now(ZoneOffset.UTC);
+            end = start.plusDays(days(query, 7, WeatherService.MAX_FORECAST_DAYS) - 1L);
+        }
+        if (end.isBefore(start)) {
+            throw new ApiException(400, "end jest wcześniejsze niż start");
+        }
+        if (ChronoUnit.DAYS.between(start, end) >= WeatherService.MAX_FORECAST_DAYS) {
+            throw new ApiException(400, "Zakres start-end może obejmować najwyżej " + WeatherService.MAX_FORECAST_DAYS + " dni");
+        }
+
+        return weatherService.getWeatherForecast(location.latitude, location.longitude,
+                parameters(query), start.toString(), end.toString());
+    }
+
+    private HourlyWeather history(Map<String, String> query) throws Exception {
+        Coordinates location = resolveLocation(query);
+        return weatherService.getHistoricalWeather(location.latitude, location.longitude,
+                parameters(query), days(query, 7, WeatherService.MAX_HISTORY_DAYS));
+    }
+
+    // Dane z lokalnego magazynu - zakres dat albo ostatnie N dni; limit zakresu sprawdza WeatherService
+    private HourlyWeather stored(Map<String, String> query) throws Exception {
+        Coordinates location = resolveLocation(query);
+        if (query.containsKey("start") || query.containsKey("end")) {
+            return weatherService.getStoredWeather(location.latitude, location.longitude,
+                    parameters(query), date(query, "start").toString(), date(query, "end").toString());
+        }
+        return weatherService.getStoredWeather(location.latitude, location.longitude,
+                parameters(query), days(query, 7, WeatherService.MAX_STORED_DAYS));
+    }
+
+    private void geocode(Map<String, String> query, JsonWriter json) throws Exception {
+        Coordinates location = resolveLocation(query);
+        json.beginObject();
+        json.name("latitude").value(location.latitude);
+        json.name("longitude").value(location.longitude);
+        json.endObject();
+    }
+
+    private void reverse(Map<String, String> query, JsonWriter json) throws Exception {
+        double lat = coordinate(query, "lat", 90);
+        double lon = coordinate(query, "lon", 180);
+        String name;
+        try {
+            name = geoCodingService.getCityName(lat, lon);
+        } catch (GeoCodingService.NotFoundException e) {
+            throw new ApiException(404, e.getMessage());
+        }
+        json.beginObject().name("name").value(name).endObject();
+    }
+
+    // Lokalizacja z parametrów lat/lon albo z nazwy miasta (city)
+    private Coordinates resolveLocation(Map<String, String> query) throws Exception {
+        String city = query.get("city");
+        if (city != null && !city.isBlank()) {
+            try {
+                return geoCodingService.getCoordinates(city);
+            } catch (GeoCodingService.NotFoundException e) {
+                throw new ApiException(404, e.getMessage());
+            }
+        }
+        return new Coordinates(coordinate(query, "lat", 90), coordinate(query, "lon", 180));
+    }
+
+    private static double coordinate(Map<String, String> query, String name, double limit) {
+        String value = query.get(name);
+        if (value == null) {
+            throw new ApiException(400, "Brak parametru " + name);
+        }
+        try {
+            double parsed = Double.parseDouble(value);
+            if (Double.isNaN(parsed) || Math.abs(parsed) > limit) {
+                throw new ApiException(400, "Parametr " + name + " poza zakresem");
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Niepoprawna wartość parametru " + name);
+        }
+    }
+
+    private static List<String> parameters(Map<String, String> query) {
+        String value = query.get("params");
+        if (value == null || value.isBlank()) {
+            return DEFAULT_PARAMETERS;
+        }
+        List<String> params = Arrays.stream(value.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+        for (String param : params) {
+            if (!CacheKeys.isKnownParameter(param)) {
+                throw new ApiException(400, "Nieznany parametr: " + param);
+            }
+        }
+        return params;
+    }
+
+    private static int days(Map<String, String> query, int defaultValue, int max) {
+        String value = query.get("days");
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int days = Integer.parseInt(value);
+            if (days < 1 || days > max) {
+                throw new ApiException(400, "days musi być z przedziału 1-" + max);
+            }
+            return days;
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Niepoprawna wartość parametru days");
+        }
+    }
+
+    private static LocalDate date(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null) {
+            throw new ApiException(400, "Brak parametru " + name);
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new ApiException(400, "Niepoprawna data w parametrze " + name);
+        }
+    }
+
+    private static Endpoint json(JsonEndpoint endpoint) {
+        return (query, out) -> {
+            JsonWriter json = new JsonWriter(out);
+            endpoint.handle(query, json);
+            json.flush();
+            return JSON;
+        };
+    }
+
+    // Format wybierany przed pobraniem danych, żeby błędny parametr nie kosztował zapytania do API
+    private static Endpoint weather(WeatherEndpoint endpoint) {
+        return (query, out) -> {
+            WeatherRenderer renderer;
+            try {
+                renderer = WeatherRenderer.forFormat(query.getOrDefault("format", "json"));
+            } catch (IllegalArgumentException e) {
+                throw new ApiException(400, e.getMessage());
+            }
+            renderer.render(endpoint.load(query), out);
+            return renderer.contentType();
+        };
+    }
+
+    // Wspólna obsługa: tylko GET, odpowiedź buforowana (znana długość pozwala utrzymać połączenie keep-alive)
+    private void handle(HttpExchange exchange, Endpoint endpoint) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                send(exchange, 405, JSON, error("Dozwolona jest tylko metoda GET"));
+                return;
+            }
+
+            int status = 200;
+            String contentType = JSON;
+            ByteArrayOutputStream body = new ByteArrayOutputStream(4096);
+            try {
+                Writer out = new OutputStreamWriter(body, StandardCharsets.UTF_8);
+                contentType = endpoint.handle(parseQuery(exchange.getRequestURI().getRawQuery()), out);
+                out.flush();
+            } catch (ApiException e) {
+                status = e.status;
+                body = error(e.getMessage());
+            } catch (IllegalArgumentException e) {
+                // Serwisy zgłaszają niepoprawne dane wejściowe (zakres dat, nazwa zmiennej) jako IllegalArgumentException
+                status = 400;
+                body = error(e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                status = 503;
+                body = error("Serwer jest zatrzymywany");
+            } catch (Exception e) {
+                // Błąd źródła danych (Open-Meteo, Nominatim) albo sieci
+                System.err.println("Błąd obsługi " + exchange.getRequestURI() + ": " + e);
+                status = 502;
+                body = error("Nie udało się pobrać danych: " + e.getMessage());
+            }
+            if (status != 200) {
+                contentType = JSON;
+            }
+            send(exchange, status, contentType, body);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, ByteArrayOutputStream body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.size());
+        try (OutputStream out = exchange.getResponseBody()) {
+            body.writeTo(out);
+        }
+    }
+
+    private static ByteArrayOutputStream error(String message) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(128);
+        JsonWriter json = new JsonWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8));
+        json.beginObject().name("error").value(message).endObject();
+        json.flush();
+        return body;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq >= 0 ? pair.substring(0, eq) : pair;
+            String value = eq >= 0 ? pair.substring(eq + 1) : "";
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+}
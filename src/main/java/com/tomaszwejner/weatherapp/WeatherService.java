@@ -1,342 +1,1002 @@
 package com.tomaszwejner.weatherapp;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-import redis.clients.jedis.Jedis;
-
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 
 public class WeatherService {
 
-    private final Jedis jedis = new Jedis("localhost", 6379);
+    // Adres API (weatherapp.openmeteo.baseUrl pozwala skierować zapytania np. na lokalny serwer zastępczy)
+    private static final String API_URL =
+            AppConfig.getBaseUrl("weatherapp.openmeteo.baseUrl", "https://api.open-meteo.com") + "/v1/forecast";
+
+    // Klucz osi czasu zapisywanej obok kolumn zmiennych
+    private static final String TIME_COLUMN = "time";
+
+    private final HttpTransport transport;
+
+    // Limit czasu odpowiedzi Open-Meteo (weatherapp.http.openmeteo.timeoutMs)
+    private final Duration timeout = AppConfig.getMillis("weatherapp.http.openmeteo.timeoutMs", 15000);
+
+    private final WeatherCache cache;
+
+    // Lokalny magazyn wszystkich pobranych danych godzinowych (null = wyłączony)
+    private final TimeSeriesStore store;
+
+    // Jednoczesne zapytania o te same dane (ten sam klucz kanoniczny) idą do API tylko raz
+    private final SingleFlight<HourlyWeather> upstreamFlights = new SingleFlight<>();
+
+    // Przeterminowane i często czytane wpisy są odświeżane w tle, użytkownik dostaje od razu wartość z cache
+    private final CacheRefresher refresher = CacheRefresher.fromConfig();
+
     private final int DEFAULT_TTL_SECONDS = 3600; // 1 godzina
-    // Metoda pomocnicza: zwraca polską etykietę dla danego parametru pogodowego
-    private String getLabelForParameter(String param) {
-        return switch (param) {
-            case "temperature_2m" -> "Temperatura";
-            case "relative_humidity_2m" -> "Wilgotność";
-            case "soil_temperature_0cm" -> "Temperatura gleby";
-            case "windspeed_10m" -> "Wiatr";
-            case "precipitation" -> "Opady";
-            case "surface_pressure" -> "Ciśnienie";
-            default -> param; // Jeśli brak dopasowania, zwraca oryginalną nazwę
-        };
-    }
-
-    private String generateCacheKey(String prefix, double latitude, double longitude, List<String> parameters, String... extra) {
-        String key = prefix + ":" + latitude + ":" + longitude + ":" + String.join(",", parameters);
-        for (String s : extra) {
-            key += ":" + s;
-        }
-        return key;
-    }
-
-    // Metoda pomocnicza: zwraca jednostkę miary dla danego parametru pogodowego
-    private String getUnitForParameter(String param) {
-        return switch (param) {
-            case "temperature_2m" -> " °C";
-            case "relative_humidity_2m" -> "%";
-            case "wind_speed_10m" -> " km/h";
-            case "precipitation" -> " mm";
-            case "pressure_msl" -> " hPa";
-            default -> "";
-        };
+
+    // Kubełki dni, które już minęły (GMT), praktycznie się nie zmieniają - trzymamy je długo
+    private static final int PAST_DAY_TTL_SECONDS = AppConfig.getInt("weatherapp.cache.pastDayTtlSeconds", 30 * 24 * 3600);
+
+    // Prefiks kluczy kubełków dziennych (wspólny dla prognozy i historii)
+    private static final String DAY_PREFIX = "day";
+
+    // Okno /v1/forecast: najwyżej 92 dni wstecz (limit past_days) i 16 dni prognozy
+    static final int MAX_HISTORY_DAYS = 92;
+    static final int MAX_FORECAST_DAYS = 16;
+
+    // Najdłuższy zakres odczytu z lokalnego magazynu (odczyt bez sieci, więc może obejmować wiele miesięcy)
+    static final int MAX_STORED_DAYS = AppConfig.getInt("weatherapp.store.maxRangeDays", 366);
+
+    // Ile lokalizacji wysyłamy w jednym zapytaniu z listą współrzędnych i ile takich zapytań naraz
+    private static final int BATCH_SIZE = AppConfig.getInt("weatherapp.openmeteo.batchSize", 100);
+    private static final int BATCH_PARALLELISM = AppConfig.getInt("weatherapp.openmeteo.batchParallelism", 4);
+
+    private final Semaphore batchPermits = new Semaphore(BATCH_PARALLELISM);
+
+    /**
+     * Opis zapytania o bieżącą pogodę: komórka siatki, część adresu specyficzna dla trybu,
+     * okno czasowe w kluczu cache i TTL.
+     */
+    private record Query(String prefix, CacheKeys.GridCell cell, String urlSuffix, boolean current,
+                         int ttlSeconds, String... window) {
+    }
+
+    /**
+     * Zakres dni kalendarzowych (GMT, tak jak oś czasu Open-Meteo) dla prognozy i historii.
+     * Dane tych zapytań leżą w cache w kubełkach: komórka × zmienna × dzień, po 24 wartości.
+     * kind ("forecast" albo "history") rozróżnia oba rodzaje w metrykach cache, bo klucze są wspólne;
+     * "stored" to odczyt z samego magazynu, bez cache.
+     */
+    private record DayRange(String kind, CacheKeys.GridCell cell, LocalDate first, LocalDate last) {
+
+        int days() {
+            return (int) ChronoUnit.DAYS.between(first, last) + 1;
+        }
+
+        DayRange withDays(LocalDate from, LocalDate to) {
+            return new DayRange(kind, cell, from, to);
+        }
+    }
+
+    // Kubełki zakresu odczytane z cache: kolumny na cały zakres (NaN w brakach), brakujące kubełki
+    // [zmienna][dzień], liczba znalezionych kubełków i najmniejszy czas życia kubełków od dzisiaj (-1, gdy brak)
+    private record CachedDays(List<String> params, Map<String, double[]> columns, boolean[][] missing,
+                              int found, long remainingMillis) {
+
+        List<String> missingParams() {
+            List<String> result = new ArrayList<>();
+            for (int p = 0; p < params.size(); p++) {
+                for (boolean day : missing[p]) {
+                    if (day) {
+                        result.add(params.get(p));
+                        break;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    // Zawartość cache dla jednej komórki: oś czasu, kolumny, które pasują do osi, brakujące zmienne
+    // i najmniejszy pozostały czas życia odczytanych kluczy (-1, gdy nieznany)
+    private record Cached(long[] time, Map<String, double[]> columns, Map<String, Double> current,
+                          List<String> missing, long remainingMillis) {
+    }
+
+    public WeatherService() {
+        this(HttpTransport.shared(), WeatherCache.shared(), TimeSeriesStore.shared());
+    }
+
+    // Bez lokalnego magazynu danych
+    public WeatherService(HttpTransport transport, WeatherCache cache) {
+        this(transport, cache, null);
+    }
+
+    public WeatherService(HttpTransport transport, WeatherCache cache, TimeSeriesStore store) {
+        this.transport = transport;
+        this.cache = cache;
+        this.store = store;
+    }
+
+    // Klucz cache: współrzędne przyciągnięte do siatki modelu, posortowane parametry (zob. CacheKeys)
+    String generateCacheKey(String prefix, CacheKeys.GridCell cell, List<String> parameters, String... extra) {
+        return CacheKeys.key(prefix, cell, parameters, extra);
     }
 
     // METODA 1: Pobiera aktualne dane pogodowe z API Open-Meteo
-    public String getCurrentWeather(double latitude, double longitude, List<String> parameters) {
-        try {
-            String cacheKey = generateCacheKey("current", latitude, longitude, parameters);
-            String cached = jedis.get(cacheKey);
-            if (cached != null) {
-                return cached + " (z cache)\n";
-            }
-            // Budujemy URL zapytania
-            StringBuilder apiUrl = new StringBuilder("https://api.open-meteo.com/v1/forecast");
-            apiUrl.append("?latitude=").append(latitude);
-            apiUrl.append("&longitude=").append(longitude);
-
-            // Jeśli są parametry - dodajemy je do zapytania
-            if (!parameters.isEmpty()) {
-                String joinedParams = String.join(",", parameters);
-                apiUrl.append("&current_weather=true");
-                apiUrl.append("&hourly=").append(joinedParams);
-            } else {
-                apiUrl.append("&current_weather=true");
-            }
-
-            // Tworzymy połączenie HTTP i wykonujemy żądanie GET
-            URL url = new URL(apiUrl.toString());
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-
-            // Obsługa błędów sieciowych
-            int responseCode = conn.getResponseCode();
-            if (responseCode != 200) {
-                throw new RuntimeException("HTTP GET Request Failed with Error code : " + responseCode);
-            }
-
-            // Odczyt odpowiedzi z API
-            BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-            StringBuilder response = new StringBuilder();
-            String inputLine;
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
-            }
-            in.close();
-
-            // Parsowanie odpowiedzi JSON
-            JSONObject json = new JSONObject(response.toString());
-            JSONObject currentWeather = json.getJSONObject("current_weather");
-            StringBuilder result = new StringBuilder();
-
-            // Pobranie wybranych aktualnych danych pogodowych
-            if (parameters.contains("temperature_2m") && currentWeather.has("temperature")) {
-                result.append("Temperatura: ").append(currentWeather.getDouble("temperature")).append(" °C\n");
-            }
-            if (parameters.contains("windspeed_10m") && currentWeather.has("windspeed")) {
-                result.append("Prędkość wiatru: ").append(currentWeather.getDouble("windspeed")).append(" km/h\n");
-            }
-
-            // Dane godzinowe (np. ciśnienie, opady, temperatura gleby)
-            if (json.has("hourly")) {
-                JSONObject hourly = json.getJSONObject("hourly");
-                JSONArray timeArray = hourly.getJSONArray("time");
-                int latestIndex = timeArray.length() - 1; // pobieramy ostatnią godzinę
-
-                if (parameters.contains("surface_pressure") && hourly.has("surface_pressure")) {
-                    JSONArray pressureArray = hourly.getJSONArray("surface_pressure");
-                    double pressure = pressureArray.getDouble(latestIndex);
-                    result.append("Ciśnienie: ").append(pressure).append(" hPa\n");
+    public HourlyWeather getCurrentWeather(double latitude, double longitude, List<String> parameters) throws Exception {
+        // Punkty z tej samej komórki siatki dzielą wpisy cache i zapytanie do API
+        return Metrics.time("weather.current", () -> load(currentQuery(CacheKeys.snap(latitude, longitude)), parameters));
+    }
+
+    // METODA 2: Pobiera prognozę pogody w przedziale dat (z API)
+    public HourlyWeather getWeatherForecast(double latitude, double longitude, List<String> parameters, String startDate, String endDate) throws Exception {
+        return Metrics.time("weather.forecast", () ->
+                loadDays(forecastRange(CacheKeys.snap(latitude, longitude), startDate, endDate), parameters));
+    }
+
+    // METODA 3: Pobiera dane historyczne pogodowe z ostatnich N dni (bez dzisiaj)
+    public HourlyWeather getHistoricalWeather(double latitude, double longitude, List<String> parameters, int pastDays) throws Exception {
+        return Metrics.time("weather.history", () -> loadDays(historyRange(CacheKeys.snap(latitude, longitude), pastDays), parameters));
+    }
+
+    /**
+     * Dane godzinowe z lokalnego magazynu (bez sieci i bez cache) - np. do wykresów z wielu miesięcy.
+     * Magazyn zawiera tylko dni zakończone w chwili pobrania (bez prognoz). Godziny, których nigdy
+     * nie pobrano, mają wartość NaN; gdy magazynu nie ma albo nie ma w nim żadnej godziny zakresu,
+     * wynik jest pusty.
+     */
+    public HourlyWeather getStoredWeather(double latitude, double longitude, List<String> parameters, String startDate, String endDate) throws Exception {
+        DayRange range = storedRange(CacheKeys.snap(latitude, longitude), LocalDate.parse(startDate), LocalDate.parse(endDate));
+        return Metrics.time("weather.stored", () -> loadStored(range, parameters));
+    }
+
+    // Ostatnie N dni bez dzisiaj z lokalnego magazynu - historia bez dostępu do sieci
+    public HourlyWeather getStoredWeather(double latitude, double longitude, List<String> parameters, int pastDays) throws Exception {
+        if (pastDays < 1 || pastDays > MAX_STORED_DAYS) {
+            throw new IllegalArgumentException("Liczba dni z magazynu musi być z przedziału 1-" + MAX_STORED_DAYS);
+        }
+        LocalDate lastDay = LocalDate.now(ZoneOffset.UTC).minusDays(1);
+        DayRange range = storedRange(CacheKeys.snap(latitude, longitude), lastDay.minusDays(pastDays - 1L), lastDay);
+        return Metrics.time("weather.stored", () -> loadStored(range, parameters));
+    }
+
+    // Wersje dla wielu lokalizacji - wyniki w kolejności listy wejściowej (zob. loadBatch)
+
+    public List<HourlyWeather> getCurrentWeather(List<Coordinates> locations, List<String> parameters) throws Exception {
+        List<Query> queries = new ArrayList<>(locations.size());
+        for (Coordinates location : locations) {
+            queries.add(currentQuery(CacheKeys.snap(location.latitude, location.longitude)));
+        }
+        return Metrics.time("weather.current.batch", () -> loadBatch(queries, parameters));
+    }
+
+    public List<HourlyWeather> getWeatherForecast(List<Coordinates> locations, List<String> parameters, String startDate, String endDate) throws Exception {
+        List<DayRange> ranges = new ArrayList<>(locations.size());
+        for (Coordinates location : locations) {
+            ranges.add(forecastRange(CacheKeys.snap(location.latitude, location.longitude), startDate, endDate));
+        }
+        return Metrics.time("weather.forecast.batch", () -> loadDayBatch(ranges, parameters));
+    }
+
+    public List<HourlyWeather> getHistoricalWeather(List<Coordinates> locations, List<String> parameters, int pastDays) throws Exception {
+        List<DayRange> ranges = new ArrayList<>(locations.size());
+        for (Coordinates location : locations) {
+            ranges.add(historyRange(CacheKeys.snap(location.latitude, location.longitude), pastDays));
+        }
+        return Metrics.time("weather.history.batch", () -> loadDayBatch(ranges, parameters));
+    }
+
+    private Query currentQuery(CacheKeys.GridCell cell) {
+        return new Query("current", cell, "&current_weather=true", true, DEFAULT_TTL_SECONDS);
+    }
+
+    private static DayRange forecastRange(CacheKeys.GridCell cell, String startDate, String endDate) {
+        DayRange range = new DayRange("forecast", cell, LocalDate.parse(startDate), LocalDate.parse(endDate));
+        if (range.last().isBefore(range.first())) {
+            throw new IllegalArgumentException("Data końcowa " + endDate + " jest wcześniejsza niż początkowa " + startDate);
+        }
+        if (range.first().isBefore(LocalDate.now(ZoneOffset.UTC).minusDays(MAX_HISTORY_DAYS))) {
+            throw new IllegalArgumentException("Data początkowa " + startDate + " jest wcześniejsza niż " + MAX_HISTORY_DAYS + " dni wstecz");
+        }
+        if (ChronoUnit.DAYS.between(range.first(), range.last()) >= MAX_HISTORY_DAYS + MAX_FORECAST_DAYS) {
+            throw new IllegalArgumentException("Zakres " + startDate + " - " + endDate + " przekracza "
+                    + (MAX_HISTORY_DAYS + MAX_FORECAST_DAYS) + " dni");
+        }
+        return range;
+    }
+
+    // Ostatnie N dni bez dzisiaj (dni GMT, tak jak kubełki dzienne)
+    private static DayRange historyRange(CacheKeys.GridCell cell, int pastDays) {
+        if (pastDays < 1 || pastDays > MAX_HISTORY_DAYS) {
+            throw new IllegalArgumentException("Liczba dni historii musi być z przedziału 1-" + MAX_HISTORY_DAYS);
+        }
+        LocalDate lastDay = LocalDate.now(ZoneOffset.UTC).minusDays(1);
+        return new DayRange("history", cell, lastDay.minusDays(pastDays - 1L), lastDay);
+    }
+
+    private static DayRange storedRange(CacheKeys.GridCell cell, LocalDate first, LocalDate last) {
+        if (last.isBefore(first)) {
+            throw new IllegalArgumentException("Data końcowa " + last + " jest wcześniejsza niż początkowa " + first);
+        }
+        if (ChronoUnit.DAYS.between(first, last) >= MAX_STORED_DAYS) {
+            throw new IllegalArgumentException("Zakres " + first + " - " + last + " przekracza " + MAX_STORED_DAYS + " dni");
+        }
+        return new DayRange("stored", cell, first, last);
+    }
+
+    private HourlyWeather loadStored(DayRange range, List<String> parameters) {
+        CacheKeys.GridCell cell = range.cell();
+        if (store == null) {
+            return emptyResult(cell);
+        }
+        Map<String, double[]> columns = new LinkedHashMap<>();
+        boolean found = false;
+        for (String param : parameters) {
+            if (!CacheKeys.isKnownParameter(param)) {
+                throw new IllegalArgumentException("Nieznana zmienna pogodowa: " + param);
+            }
+            double[] column = store.read(cell.key(), param, range.first().toEpochDay() * 24, range.days() * 24);
+            found |= Arrays.stream(column).anyMatch(value -> !Double.isNaN(value));
+            columns.put(param, column);
+        }
+        return found
+                ? new HourlyWeather(cell.latitude(), cell.longitude(), hoursOf(range), columns, new HashMap<>())
+                : emptyResult(cell);
+    }
+
+    /**
+     * Ścieżka bieżącej pogody: każda zmienna jest przechowywana w cache pod osobnym kluczem
+     * (razem z osią czasu okna), więc dowolny podzbiór parametrów składamy jednym odczytem wielu kluczy,
+     * a z Open-Meteo pobieramy tylko zmienne, których w cache brakuje.
+     */
+    private HourlyWeather load(Query query, List<String> parameters) throws Exception {
+        CacheKeys.GridCell cell = query.cell();
+        List<String> params = CacheKeys.canonicalParameters(parameters);
+        if (params.isEmpty()) {
+            return emptyResult(cell);
+        }
+
+        Cached cached = decodeCached(query, cache.getAllWithTtl(cacheKeys(query, params)), params);
+        long[] time = cached.time();
+        Map<String, double[]> columns = cached.columns();
+        Map<String, Double> current = cached.current();
+
+        boolean fromCache = cached.missing().isEmpty();
+        if (fromCache) {
+            String flightKey = flightKey(query, params);
+            if (refresher.claim(flightKey, cached.remainingMillis())) {
+                refresher.refreshInBackground(List.of(flightKey), () -> fetchShared(query, params));
+            }
+        } else {
+            HourlyWeather fetched = fetchShared(query, cached.missing());
+
+            // Oś czasu się zmieniła - kolumny z cache nie pasują, pobieramy wszystko od nowa
+            if (!columns.isEmpty() && !Arrays.equals(time, fetched.getEpochHours())) {
+                columns.clear();
+                current.clear();
+                fetched = fetchShared(query, params);
+            }
+            time = fetched.getEpochHours();
+
+            for (String param : fetched.getParameters()) {
+                columns.put(param, fetched.getColumn(param));
+                if (fetched.hasCurrent(param)) {
+                    current.put(param, fetched.getCurrent(param));
                 }
+            }
+        }
+
+        HourlyWeather weather = new HourlyWeather(cell.latitude(), cell.longitude(), time, columns, current)
+                .select(parameters);
+        weather.setFromCache(fromCache);
+        return weather;
+    }
 
-                if (parameters.contains("precipitation") && hourly.has("precipitation")) {
-                    JSONArray precipitationArray = hourly.getJSONArray("precipitation");
-                    double precipitation = precipitationArray.getDouble(latestIndex);
-                    result.append("Opady: ").append(precipitation).append(" mm\n");
+    /**
+     * Ścieżka dla wielu lokalizacji. Punkty z tej samej komórki siatki są liczone raz, cache całej listy
+     * jest czytany jednym odczytem wielu kluczy, a komórki bez kompletu danych w cache są pobierane
+     * zapytaniami z listą współrzędnych (po BATCH_SIZE, najwyżej BATCH_PARALLELISM naraz).
+     * Komórka, w której brakuje choć jednej zmiennej, jest pobierana w całości - dzięki temu wszystkie
+     * komórki jednej paczki mają ten sam zestaw parametrów. Komórki przeterminowane albo gorące
+     * są zwracane z cache i odświeżane w tle jednym zadaniem, też paczkami.
+     */
+    private List<HourlyWeather> loadBatch(List<Query> queries, List<String> parameters) throws Exception {
+        List<String> params = CacheKeys.canonicalParameters(parameters);
+
+        // Unikalne komórki w kolejności pierwszego wystąpienia
+        Map<String, Query> cells = new LinkedHashMap<>();
+        for (Query query : queries) {
+            cells.putIfAbsent(query.cell().key(), query);
+        }
+
+        Map<String, HourlyWeather> results = new HashMap<>();
+        List<Query> toFetch = new ArrayList<>();
+        List<Query> toRefresh = new ArrayList<>();
+        List<String> refreshKeys = new ArrayList<>();
+        if (params.isEmpty()) {
+            for (Query query : cells.values()) {
+                results.put(query.cell().key(), emptyResult(query.cell()));
+            }
+        } else {
+            List<String> keys = new ArrayList<>(cells.size() * (params.size() + 1));
+            for (Query query : cells.values()) {
+                keys.addAll(cacheKeys(query, params));
+            }
+            List<RedisCache.TimedValue> values = cache.getAllWithTtl(keys);
+
+            int stride = params.size() + 1;
+            int index = 0;
+            for (Query query : cells.values()) {
+                Cached cached = decodeCached(query, values.subList(index * stride, (index + 1) * stride), params);
+                index++;
+                if (cached.missing().isEmpty()) {
+                    CacheKeys.GridCell cell = query.cell();
+                    HourlyWeather weather = new HourlyWeather(cell.latitude(), cell.longitude(),
+                            cached.time(), cached.columns(), cached.current());
+                    weather.setFromCache(true);
+                    results.put(cell.key(), weather);
+
+                    String flightKey = flightKey(query, params);
+                    if (refresher.claim(flightKey, cached.remainingMillis())) {
+                        toRefresh.add(query);
+                        refreshKeys.add(flightKey);
+                    }
+                } else {
+                    toFetch.add(query);
                 }
+            }
+        }
+
+        if (!toRefresh.isEmpty()) {
+            refreshInBatches(refreshKeys, toRefresh, batch -> fetchAndStore(batch, params));
+        }
+
+        List<HourlyWeather> fetched = fetchInBatches(toFetch, batch -> fetchAndStore(batch, params));
+        for (int i = 0; i < fetched.size(); i++) {
+            results.put(toFetch.get(i).cell().key(), fetched.get(i));
+        }
 
-                if (parameters.contains("soil_temperature_0cm") && hourly.has("soil_temperature_0cm")) {
-                    JSONArray soilTempArray = hourly.getJSONArray("soil_temperature_0cm");
-                    double soilTemp = soilTempArray.getDouble(latestIndex);
-                    result.append("Temperatura gleby: ").append(soilTemp).append(" °C\n");
+        List<HourlyWeather> ordered = new ArrayList<>(queries.size());
+        for (Query query : queries) {
+            ordered.add(results.get(query.cell().key()).select(parameters));
+        }
+        return ordered;
+    }
+
+    // Pobranie jednej paczki lokalizacji (zapytanie z listą współrzędnych)
+    private interface BatchFetch<T> {
+        List<HourlyWeather> fetch(List<T> batch) throws Exception;
+    }
+
+    // Paczki po BATCH_SIZE pobieramy równolegle na wątkach wirtualnych (najwyżej BATCH_PARALLELISM naraz)
+    private <T> List<HourlyWeather> fetchInBatches(List<T> items, BatchFetch<T> fetch) throws Exception {
+        List<CompletableFuture<List<HourlyWeather>>> batches = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += BATCH_SIZE) {
+            List<T> batch = items.subList(from, Math.min(from + BATCH_SIZE, items.size()));
+            batches.add(AsyncTasks.supply(() -> {
+                batchPermits.acquire();
+                try {
+                    return fetch.fetch(batch);
+                } finally {
+                    batchPermits.release();
                 }
+            }));
+        }
+
+        List<HourlyWeather> results = new ArrayList<>(items.size());
+        try {
+            for (CompletableFuture<List<HourlyWeather>> batch : batches) {
+                results.addAll(batch.get());
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } finally {
+            // Przy błędzie lub przerwaniu nie zostawiamy pozostałych paczek w tle
+            for (CompletableFuture<List<HourlyWeather>> batch : batches) {
+                batch.cancel(true);
             }
+        }
+        return results;
+    }
 
-            // Jeśli brak danych, zwracamy informację
-            if (result.isEmpty()) {
-                result.append("Brak danych pogodowych dla wybranych parametrów.");
+    // Odświeżenie w tle komórek zwróconych z cache - jednym zadaniem, paczka po paczce
+    private <T> void refreshInBatches(List<String> keys, List<T> items, BatchFetch<T> fetch) {
+        refresher.refreshInBackground(keys, () -> {
+            for (int from = 0; from < items.size(); from += BATCH_SIZE) {
+                List<T> batch = items.subList(from, Math.min(from + BATCH_SIZE, items.size()));
+                batchPermits.acquire();
+                try {
+                    fetch.fetch(batch);
+                } finally {
+                    batchPermits.release();
+                }
             }
+            return null;
+        });
+    }
 
-            String resultStr = result.toString();
-            jedis.setex(cacheKey, DEFAULT_TTL_SECONDS, resultStr);
-            return resultStr;
+    /**
+     * Ścieżka prognozy i historii. Każda zmienna każdego dnia leży w cache pod osobnym kluczem,
+     * więc dowolny zakres dat składamy z kubełków, a z Open-Meteo pobieramy tylko dni od pierwszego
+     * do ostatniego brakującego kubełka i tylko zmienne, których w nich brakuje. Kubełki dni,
+     * które już minęły, mają długi TTL - zmieniają się tylko dni od dzisiaj. Minione dni, których nie ma
+     * w cache, są najpierw szukane w lokalnym magazynie; gdy Open-Meteo nie odpowiada, wynik może
+     * zostać złożony z magazynu w całości.
+     */
+    private HourlyWeather loadDays(DayRange range, List<String> parameters) throws Exception {
+        CacheKeys.GridCell cell = range.cell();
+        List<String> params = CacheKeys.canonicalParameters(parameters);
+        if (params.isEmpty()) {
+            return emptyResult(cell);
+        }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            return "Błąd podczas pobierania pogody.";
+        CachedDays cached = decodeDays(range, params, cache.getAllWithTtl(dayKeys(range, params), range.kind()));
+        if (!cached.missingParams().isEmpty()) {
+            cached = fillFromStore(range, cached, true);
         }
+        boolean fromCache = cached.missingParams().isEmpty();
+        if (fromCache) {
+            DayRange recent = recentDays(range);
+            if (recent != null) {
+                String flightKey = dayFlightKey(recent, params);
+                if (refresher.claim(flightKey, cached.remainingMillis())) {
+                    refresher.refreshInBackground(List.of(flightKey), () -> fetchDaysShared(recent, params));
+                }
+            }
+        } else {
+            HourlyWeather fetched;
+            try {
+                fetched = fetchDaysShared(missingDays(range, cached), cached.missingParams());
+            } catch (IOException e) {
+                // Bez sieci (albo przy błędzie API) składamy wynik z magazynu, jeśli ma wszystkie brakujące dni
+                CachedDays stored = fillFromStore(range, cached, false);
+                if (!stored.missingParams().isEmpty()) {
+                    throw e;
+                }
+                System.err.println("Open-Meteo niedostępne (" + e.getMessage() + ") - dane z lokalnego magazynu");
+                cached = stored;
+                fetched = emptyResult(cell);
+                fromCache = true;
+            }
+            if (fetched.isEmpty() && cached.found() == 0) {
+                return emptyResult(cell);
+            }
+            copyDays(fetched, range, cached.columns());
+        }
+
+        HourlyWeather weather = new HourlyWeather(cell.latitude(), cell.longitude(), hoursOf(range),
+                cached.columns(), new HashMap<>()).select(parameters);
+        weather.setFromCache(fromCache);
+        return weather;
     }
 
-    // METODA 2: Pobiera prognozę pogody w przedziale dat (z API)
-    public String getWeatherForecast(double latitude, double longitude, List<String> parameters, String startDate, String endDate) {
-        String cacheKey = generateCacheKey("forecast", latitude, longitude, parameters, startDate, endDate);
-        String cached = jedis.get(cacheKey);
-        if (cached != null) {
-            return cached + " (z cache)\n";}
-        try {
-            // Budujemy URL zapytania z datami
-            StringBuilder apiUrl = new StringBuilder("https://api.open-meteo.com/v1/forecast");
-            apiUrl.append("?latitude=").append(latitude);
-            apiUrl.append("&longitude=").append(longitude);
-            apiUrl.append("&start_date=").append(startDate);
-            apiUrl.append("&end_date=").append(endDate);
-
-            // Dołączamy wybrane parametry
-            if (!parameters.isEmpty()) {
-                String joinedParams = String.join(",", parameters);
-                apiUrl.append("&hourly=").append(joinedParams);
-            }
-
-            // Połączenie HTTP
-            URL url = new URL(apiUrl.toString());
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-
-            // Obsługa błędu HTTP
-            int responseCode = conn.getResponseCode();
-            if (responseCode != 200) {
-                throw new RuntimeException("HTTP GET Request Failed with Error code : " + responseCode);
-            }
-
-            // Odczyt odpowiedzi JSON
-            BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-            StringBuilder response = new StringBuilder();
-            String inputLine;
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
-            }
-            in.close();
-
-            // Parsowanie danych
-            JSONObject json = new JSONObject(response.toString());
-
-            if (!json.has("hourly")) {
-                return "Brak danych prognozy pogodowej dla wybranych parametrów.";
-            }
-
-            JSONObject hourly = json.getJSONObject("hourly");
-            JSONArray timeArray = hourly.getJSONArray("time");
-
-            StringBuilder result = new StringBuilder();
-
-            // Iteracja przez godziny prognozy
-            for (int i = 0; i < timeArray.length(); i++) {
-                String time = timeArray.getString(i);
-                LocalDateTime dateTime = LocalDateTime.parse(time);
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("d MMMM HH:mm", new Locale("pl"));
-                String formattedTime = dateTime.format(formatter);
-
-                result.append(formattedTime).append(":\n");
-
-                // Dla każdego parametru wypisujemy jego wartość
-                for (String param : parameters) {
-                    if (hourly.has(param)) {
-                        JSONArray paramArray = hourly.getJSONArray(param);
-                        Object val = paramArray.get(i);
-
-                        String formattedValue;
-                        if (val == JSONObject.NULL) {
-                            formattedValue = "brak danych";
-                        } else if (val instanceof Number number) {
-                            if (param.toLowerCase().contains("precipitation") && number.doubleValue() == 0.0) {
-                                formattedValue = "brak";
-                            } else {
-                                formattedValue = number + getUnitForParameter(param);
-                            }
-                        } else {
-                            formattedValue = val.toString();
-                        }
-
-                        result.append("  ").append(getLabelForParameter(param)).append(": ").append(formattedValue).append("\n");
-                    }
+    /**
+     * Prognoza / historia dla wielu lokalizacji (ten sam zakres dat). Kubełki wszystkich komórek są czytane
+     * jednym odczytem wielu kluczy; komórka z choć jednym brakującym kubełkiem jest pobierana w całości,
+     * żeby paczka zapytań z listą współrzędnych miała jeden zakres dat i jeden zestaw zmiennych.
+     */
+    private List<HourlyWeather> loadDayBatch(List<DayRange> ranges, List<String> parameters) throws Exception {
+        List<String> params = CacheKeys.canonicalParameters(parameters);
+
+        // Unikalne komórki w kolejności pierwszego wystąpienia
+        Map<String, DayRange> cells = new LinkedHashMap<>();
+        for (DayRange range : ranges) {
+            cells.putIfAbsent(range.cell().key(), range);
+        }
+
+        Map<String, HourlyWeather> results = new HashMap<>();
+        List<DayRange> toFetch = new ArrayList<>();
+        List<DayRange> toRefresh = new ArrayList<>();
+        List<String> refreshKeys = new ArrayList<>();
+        if (params.isEmpty()) {
+            for (DayRange range : cells.values()) {
+                results.put(range.cell().key(), emptyResult(range.cell()));
+            }
+        } else {
+            List<String> keys = new ArrayList<>();
+            for (DayRange range : cells.values()) {
+                keys.addAll(dayKeys(range, params));
+            }
+            // Wszystkie zakresy paczki są tego samego rodzaju (prognoza albo historia)
+            String kind = ranges.isEmpty() ? null : ranges.get(0).kind();
+            List<RedisCache.TimedValue> values = cache.getAllWithTtl(keys, kind);
+
+            int from = 0;
+            for (DayRange range : cells.values()) {
+                int stride = params.size() * range.days();
+                CachedDays cached = decodeDays(range, params, values.subList(from, from + stride));
+                from += stride;
+                if (!cached.missingParams().isEmpty()) {
+                    cached = fillFromStore(range, cached, true);
+                }
+                if (!cached.missingParams().isEmpty()) {
+                    toFetch.add(range);
+                    continue;
                 }
 
-                result.append("\n");
+                CacheKeys.GridCell cell = range.cell();
+                HourlyWeather weather = new HourlyWeather(cell.latitude(), cell.longitude(), hoursOf(range),
+                        cached.columns(), new HashMap<>());
+                weather.setFromCache(true);
+                results.put(cell.key(), weather);
+
+                DayRange recent = recentDays(range);
+                if (recent != null) {
+                    String flightKey = dayFlightKey(recent, params);
+                    if (refresher.claim(flightKey, cached.remainingMillis())) {
+                        toRefresh.add(recent);
+                        refreshKeys.add(flightKey);
+                    }
+                }
             }
+        }
 
-            String resultStr = result.toString();
-            jedis.setex(cacheKey, DEFAULT_TTL_SECONDS, resultStr);
-            return resultStr;
+        if (!toRefresh.isEmpty()) {
+            refreshInBatches(refreshKeys, toRefresh, batch -> fetchAndStoreDays(batch, params));
+        }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            return "Błąd podczas pobierania prognozy pogody. Jeśli pobierasz prognozę pogody, spróbuj zmniejszając liczbę dni";
+        List<HourlyWeather> fetched = fetchInBatches(toFetch, batch -> fetchAndStoreDays(batch, params));
+        for (int i = 0; i < fetched.size(); i++) {
+            DayRange range = toFetch.get(i);
+            CacheKeys.GridCell cell = range.cell();
+            HourlyWeather weather = fetched.get(i);
+            if (!weather.isEmpty()) {
+                Map<String, double[]> columns = new LinkedHashMap<>();
+                for (String param : params) {
+                    columns.put(param, nanColumn(range.days() * 24));
+                }
+                copyDays(weather, range, columns);
+                weather = new HourlyWeather(cell.latitude(), cell.longitude(), hoursOf(range), columns, new HashMap<>());
+            }
+            results.put(cell.key(), weather);
         }
-    }
 
-    // METODA 3: Pobiera dane historyczne pogodowe z ostatnich N dni
-    public String getHistoricalWeather(double latitude, double longitude, List<String> parameters, int pastDays) {
-        String cacheKey = generateCacheKey("history", latitude, longitude, parameters, String.valueOf(pastDays));
-        String cached = jedis.get(cacheKey);
-        if (cached != null) {
-            return cached + " (z cache)\n";
+        List<HourlyWeather> ordered = new ArrayList<>(ranges.size());
+        for (DayRange range : ranges) {
+            ordered.add(results.get(range.cell().key()).select(parameters));
         }
-        try {
-            // Budujemy URL z parametrem past_days
-            StringBuilder apiUrl = new StringBuilder("https://api.open-meteo.com/v1/forecast");
-            apiUrl.append("?latitude=").append(latitude);
-            apiUrl.append("&longitude=").append(longitude);
-            apiUrl.append("&past_days=").append(pastDays);
-            if (!parameters.isEmpty()) {
-                String joinedParams = String.join(",", parameters);
-                apiUrl.append("&hourly=").append(joinedParams);
+        return ordered;
+    }
+
+    // Klucze kubełków zakresu: dla każdej zmiennej kolejne dni (day:komórka:zmienna:data)
+    private List<String> dayKeys(DayRange range, List<String> params) {
+        List<String> keys = new ArrayList<>(params.size() * range.days());
+        for (String param : params) {
+            for (LocalDate day = range.first(); !day.isAfter(range.last()); day = day.plusDays(1)) {
+                keys.add(generateCacheKey(DAY_PREFIX, range.cell(), List.of(param), day.toString()));
             }
+        }
+        return keys;
+    }
 
-            // Połączenie i pobranie danych
-            URL url = new URL(apiUrl.toString());
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
+    // Składa kubełki odczytane dla kluczy z dayKeys w kolumny całego zakresu
+    private CachedDays decodeDays(DayRange range, List<String> params, List<RedisCache.TimedValue> values) {
+        int days = range.days();
+        long today = LocalDate.now(ZoneOffset.UTC).toEpochDay();
+        Map<String, double[]> columns = new LinkedHashMap<>();
+        boolean[][] missing = new boolean[params.size()][days];
+        int found = 0;
+        long remaining = -1;
+
+        for (int p = 0; p < params.size(); p++) {
+            double[] column = nanColumn(days * 24);
+            for (int d = 0; d < days; d++) {
+                RedisCache.TimedValue value = values.get(p * days + d);
+                ColumnCodec.CachedColumn decoded = value != null ? decodeColumn(range.kind(), value.value()) : null;
+                double[] hours = decoded != null ? decoded.values() : null;
+                if (hours == null || hours.length != 24) {
+                    missing[p][d] = true;
+                    continue;
+                }
+                System.arraycopy(hours, 0, column, d * 24, 24);
+                found++;
 
-            int responseCode = conn.getResponseCode();
-            if (responseCode != 200) {
-                throw new RuntimeException("HTTP GET Request Failed with Error code : " + responseCode);
+                // Czas życia liczy się tylko dla dni, które mogą się jeszcze zmienić
+                if (range.first().toEpochDay() + d >= today && value.ttlMillis() >= 0) {
+                    remaining = remaining < 0 ? value.ttlMillis() : Math.min(remaining, value.ttlMillis());
+                }
             }
+            columns.put(params.get(p), column);
+        }
+        return new CachedDays(params, columns, missing, found, remaining);
+    }
 
-            BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-            StringBuilder response = new StringBuilder();
-            String inputLine;
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
+    /**
+     * Uzupełnia brakujące kubełki pełnymi dobami z lokalnego magazynu. Minione dni wracają też do cache.
+     *
+     * @param pastOnly tylko dni sprzed dzisiaj (GMT); dzisiejsze i przyszłe dane z magazynu mogą być nieaktualne
+     */
+    private CachedDays fillFromStore(DayRange range, CachedDays cached, boolean pastOnly) {
+        if (store == null) {
+            return cached;
+        }
+        long today = LocalDate.now(ZoneOffset.UTC).toEpochDay();
+        long firstDay = range.first().toEpochDay();
+        boolean[][] missing = cached.missing();
+        int found = cached.found();
+        Map<String, String> toCache = new LinkedHashMap<>();
+
+        for (int p = 0; p < cached.params().size(); p++) {
+            String param = cached.params().get(p);
+            double[] column = cached.columns().get(param);
+            for (int d = 0; d < missing[p].length; d++) {
+                long day = firstDay + d;
+                if (!missing[p][d] || (pastOnly && day >= today)) {
+                    continue;
+                }
+                double[] hours = store.read(range.cell().key(), param, day * 24, 24);
+                if (Arrays.stream(hours).anyMatch(Double::isNaN)) {
+                    continue;
+                }
+                System.arraycopy(hours, 0, column, d * 24, 24);
+                missing[p][d] = false;
+                found++;
+                if (day < today) {
+                    toCache.put(generateCacheKey(DAY_PREFIX, range.cell(), List.of(param), LocalDate.ofEpochDay(day).toString()),
+                            ColumnCodec.encodeColumn(hours, Double.NaN));
+                }
             }
-            in.close();
+        }
+        if (!toCache.isEmpty()) {
+            cache.setAll(toCache, PAST_DAY_TTL_SECONDS);
+        }
+        return new CachedDays(cached.params(), cached.columns(), missing, found, cached.remainingMillis());
+    }
 
-            // Parsowanie odpowiedzi
-            JSONObject json = new JSONObject(response.toString());
+    // Najkrótszy zakres obejmujący wszystkie dni z brakującymi kubełkami
+    private static DayRange missingDays(DayRange range, CachedDays cached) {
+        int days = range.days();
+        int first = days;
+        int last = -1;
+        for (boolean[] param : cached.missing()) {
+            for (int d = 0; d < days; d++) {
+                if (param[d]) {
+                    first = Math.min(first, d);
+                    last = Math.max(last, d);
+                }
+            }
+        }
+        return range.withDays(range.first().plusDays(first), range.first().plusDays(last));
+    }
 
-            if (!json.has("hourly")) {
-                return "Brak danych historycznych dla wybranych parametrów.";
+    // Część zakresu od dzisiaj (GMT) - tylko te dni odświeżamy; null, gdy cały zakres jest w przeszłości
+    private static DayRange recentDays(DayRange range) {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        if (range.last().isBefore(today)) {
+            return null;
+        }
+        return range.first().isBefore(today) ? range.withDays(today, range.last()) : range;
+    }
+
+    // Przepisuje godziny pobranego wyniku na pozycje w kolumnach zakresu (godziny spoza zakresu są pomijane)
+    private static void copyDays(HourlyWeather fetched, DayRange range, Map<String, double[]> columns) {
+        long firstHour = range.first().toEpochDay() * 24;
+        for (String param : fetched.getParameters()) {
+            double[] target = columns.get(param);
+            double[] source = fetched.getColumn(param);
+            if (target == null) {
+                continue;
+            }
+            for (int i = 0; i < fetched.size(); i++) {
+                long offset = fetched.getEpochHour(i) - firstHour;
+                if (offset >= 0 && offset < target.length) {
+                    target[(int) offset] = source[i];
+                }
             }
+        }
+    }
+
+    private static long[] hoursOf(DayRange range) {
+        long[] hours = new long[range.days() * 24];
+        long first = range.first().toEpochDay() * 24;
+        for (int i = 0; i < hours.length; i++) {
+            hours[i] = first + i;
+        }
+        return hours;
+    }
 
-            JSONObject hourly = json.getJSONObject("hourly");
-            JSONArray timeArray = hourly.getJSONArray("time");
+    private static double[] nanColumn(int length) {
+        double[] column = new double[length];
+        Arrays.fill(column, Double.NaN);
+        return column;
+    }
 
-            StringBuilder result = new StringBuilder();
+    private HourlyWeather emptyResult(CacheKeys.GridCell cell) {
+        return new HourlyWeather(cell.latitude(), cell.longitude(), new long[0], new LinkedHashMap<>(), new HashMap<>());
+    }
 
-            for (int i = 0; i < timeArray.length(); i++) {
-                String time = timeArray.getString(i);
-                LocalDateTime dateTime = LocalDateTime.parse(time);
+    // Klucze cache jednej komórki: najpierw oś czasu, potem kolejne zmienne
+    private List<String> cacheKeys(Query query, List<String> params) {
+        List<String> keys = new ArrayList<>(params.size() + 1);
+        keys.add(generateCacheKey(query.prefix(), query.cell(), List.of(TIME_COLUMN), query.window()));
+        for (String param : params) {
+            keys.add(generateCacheKey(query.prefix(), query.cell(), List.of(param), query.window()));
+        }
+        return keys;
+    }
 
-                // Pomijamy dane z dzisiaj i przyszłości
-                if (dateTime.toLocalDate().isAfter(LocalDate.now().minusDays(1))) {
+    // Dekoduje wartości odczytane dla kluczy z cacheKeys (null = brak w cache)
+    private Cached decodeCached(Query query, List<RedisCache.TimedValue> values, List<String> params) {
+        long[] time = values.get(0) != null ? decodeTime(query.prefix(), values.get(0).value()) : null;
+        Map<String, double[]> columns = new LinkedHashMap<>();
+        Map<String, Double> current = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+
+        long remaining = -1;
+        for (RedisCache.TimedValue value : values) {
+            if (value != null && value.ttlMillis() >= 0) {
+                remaining = remaining < 0 ? value.ttlMillis() : Math.min(remaining, value.ttlMillis());
+            }
+        }
+
+        for (int i = 0; i < params.size(); i++) {
+            RedisCache.TimedValue value = values.get(i + 1);
+            if (time != null && value != null) {
+                ColumnCodec.CachedColumn column = decodeColumn(query.prefix(), value.value());
+                if (column != null && column.values().length == time.length) {
+                    columns.put(params.get(i), column.values());
+                    if (!Double.isNaN(column.current())) {
+                        current.put(params.get(i), column.current());
+                    }
                     continue;
                 }
+            }
+            missing.add(params.get(i));
+        }
+        return new Cached(time, columns, current, missing, remaining);
+    }
+
+    /**
+     * Dekoduje kolumnę z cache. Wartość uszkodzona, obca albo zapisana nowszym kodowaniem (null)
+     * jest traktowana jak brak w cache - zmienna zostanie pobrana na nowo, a jej wpis nadpisany.
+     */
+    private static ColumnCodec.CachedColumn decodeColumn(String prefix, String encoded) {
+        try {
+            return ColumnCodec.decodeColumn(encoded);
+        } catch (RuntimeException e) {
+            decodeFailed(prefix, e);
+            return null;
+        }
+    }
+
+    // Jak decodeColumn, dla osi czasu; bez niej wszystkie zmienne komórki są traktowane jak brakujące
+    private static long[] decodeTime(String prefix, String encoded) {
+        try {
+            return ColumnCodec.decodeTime(encoded);
+        } catch (RuntimeException e) {
+            decodeFailed(prefix, e);
+            return null;
+        }
+    }
+
+    private static void decodeFailed(String prefix, RuntimeException e) {
+        Metrics.increment("weatherapp_cache_decode_errors_total", "prefix", prefix);
+        System.err.println("Nie udało się zdekodować wartości z cache (" + prefix + "): " + e);
+    }
+
+    /**
+     * Pobiera zmienne z API i zapisuje je w cache. Zapytania o ten sam zestaw zmiennych
+     * (ten sam klucz kanoniczny) wykonywane w tym samym czasie dzielą jedno pobranie i jego wynik.
+     * Wynik jest współdzielony między wątkami, więc nie wolno modyfikować jego tablic.
+     */
+    private HourlyWeather fetchShared(Query query, List<String> params) throws Exception {
+        return upstreamFlights.execute(flightKey(query, params), () -> fetchAndStore(List.of(query), params).get(0));
+    }
+
+    // Klucz kanoniczny zestawu zmiennych komórki - wspólny dla SingleFlight i odświeżania w tle
+    private String flightKey(Query query, List<String> params) {
+        return generateCacheKey(query.prefix(), query.cell(), params, query.window());
+    }
+
+    private HourlyWeather fetchDaysShared(DayRange range, List<String> params) throws Exception {
+        return upstreamFlights.execute(dayFlightKey(range, params), () -> fetchAndStoreDays(List.of(range), params).get(0));
+    }
+
+    private String dayFlightKey(DayRange range, List<String> params) {
+        return generateCacheKey(DAY_PREFIX, range.cell(), params, range.first().toString(), range.last().toString());
+    }
 
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("d MMMM HH:mm", new Locale("pl"));
-                String formattedTime = dateTime.format(formatter);
-                result.append(formattedTime).append(":\n");
-
-                // Wypisywanie wartości parametrów
-                for (String param : parameters) {
-                    if (hourly.has(param)) {
-                        JSONArray paramArray = hourly.getJSONArray(param);
-                        Object val = paramArray.get(i);
-
-                        String formattedValue;
-                        if (val == JSONObject.NULL) {
-                            formattedValue = "brak danych";
-                        } else if (val instanceof Number number) {
-                            if (param.toLowerCase().contains("precipitation") && number.doubleValue() == 0.0) {
-                                formattedValue = "brak";
-                            } else {
-                                formattedValue = number + getUnitForParameter(param);
-                            }
-                        } else {
-                            formattedValue = val.toString();
-                        }
-
-                        result.append("  ").append(getLabelForParameter(param)).append(": ").append(formattedValue).append("\n");
+    // Pobiera zmienne dla listy komórek jednym zapytaniem i zapisuje wyniki w cache
+    private List<HourlyWeather> fetchAndStore(List<Query> queries, List<String> params) throws Exception {
+        List<CacheKeys.GridCell> cells = new ArrayList<>(queries.size());
+        for (Query query : queries) {
+            cells.add(query.cell());
+        }
+        Query first = queries.get(0);
+        List<HourlyWeather> fetched = fetchUpstream(cells, first.urlSuffix(), first.current(), params);
+        archive(cells, fetched);
+
+        Map<String, String> toCache = new LinkedHashMap<>();
+        for (int i = 0; i < queries.size(); i++) {
+            Query query = queries.get(i);
+            HourlyWeather weather = fetched.get(i);
+
+            // Nie zapisujemy pustej odpowiedzi (brak danych godzinowych)
+            if (weather.isEmpty()) {
+                continue;
+            }
+            toCache.put(generateCacheKey(query.prefix(), query.cell(), List.of(TIME_COLUMN), query.window()),
+                    ColumnCodec.encodeTime(weather.getEpochHours()));
+            for (String param : weather.getParameters()) {
+                toCache.put(generateCacheKey(query.prefix(), query.cell(), List.of(param), query.window()),
+                        ColumnCodec.encodeColumn(weather.getColumn(param), weather.getCurrent(param)));
+            }
+        }
+        if (!toCache.isEmpty()) {
+            // Wpis żyje w cache dłużej niż jego TTL - po TTL jest zwracany jako przeterminowany i odświeżany
+            cache.setAll(toCache, refresher.storeTtlSeconds(queries.get(0).ttlSeconds()));
+        }
+        return fetched;
+    }
+
+    /**
+     * Pobiera zakres dni (wspólny dla listy komórek) jednym zapytaniem i zapisuje go w cache kubełkami:
+     * dni minione z długim TTL, dzisiejszy i przyszłe z TTL prognozy.
+     */
+    private List<HourlyWeather> fetchAndStoreDays(List<DayRange> ranges, List<String> params) throws Exception {
+        List<CacheKeys.GridCell> cells = new ArrayList<>(ranges.size());
+        for (DayRange range : ranges) {
+            cells.add(range.cell());
+        }
+        DayRange first = ranges.get(0);
+        String urlSuffix = "&start_date=" + first.first() + "&end_date=" + first.last();
+        List<HourlyWeather> fetched = fetchUpstream(cells, urlSuffix, false, params);
+        archive(cells, fetched);
+
+        long today = LocalDate.now(ZoneOffset.UTC).toEpochDay();
+        Map<String, String> past = new LinkedHashMap<>();
+        Map<String, String> recent = new LinkedHashMap<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            HourlyWeather weather = fetched.get(i);
+            CacheKeys.GridCell cell = ranges.get(i).cell();
+
+            // Dzielimy kolumny na doby; zapisujemy tylko dni, które przyszły w odpowiedzi
+            Map<Long, Integer> dayStarts = new LinkedHashMap<>();
+            for (int h = 0; h < weather.size(); h++) {
+                dayStarts.putIfAbsent(Math.floorDiv(weather.getEpochHour(h), 24), h);
+            }
+            for (String param : weather.getParameters()) {
+                double[] column = weather.getColumn(param);
+                for (Map.Entry<Long, Integer> day : dayStarts.entrySet()) {
+                    double[] hours = nanColumn(24);
+                    for (int h = day.getValue(); h < weather.size() && Math.floorDiv(weather.getEpochHour(h), 24) == day.getKey(); h++) {
+                        hours[Math.floorMod(weather.getEpochHour(h), 24)] = column[h];
                     }
+                    String key = generateCacheKey(DAY_PREFIX, cell, List.of(param), LocalDate.ofEpochDay(day.getKey()).toString());
+                    (day.getKey() < today ? past : recent).put(key, ColumnCodec.encodeColumn(hours, Double.NaN));
                 }
+            }
+        }
+        if (!past.isEmpty()) {
+            cache.setAll(past, PAST_DAY_TTL_SECONDS);
+        }
+        if (!recent.isEmpty()) {
+            cache.setAll(recent, refresher.storeTtlSeconds(DEFAULT_TTL_SECONDS));
+        }
+        return fetched;
+    }
 
-                result.append("\n");
+    /**
+     * Dopisuje pobrane dane do lokalnego magazynu; błąd zapisu nie przerywa zapytania.
+     * Zapisywane są tylko dni zakończone (GMT) w chwili pobrania - prognoza na dzisiaj i dalej
+     * nie może później wrócić z magazynu jako dane historyczne.
+     */
+    private void archive(List<CacheKeys.GridCell> cells, List<HourlyWeather> fetched) {
+        if (store == null) {
+            return;
+        }
+        long todayHour = LocalDate.now(ZoneOffset.UTC).toEpochDay() * 24;
+        try {
+            for (int i = 0; i < cells.size(); i++) {
+                store.append(cells.get(i).key(), fetched.get(i), todayHour);
+            }
+        } catch (IOException e) {
+            System.err.println("Nie udało się zapisać danych w magazynie: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Pobiera z Open-Meteo podane zmienne dla listy komórek (z tą samą częścią adresu urlSuffix).
+     * Współrzędne idą jako listy rozdzielone przecinkami; wyniki są w kolejności komórek.
+     */
+    private List<HourlyWeather> fetchUpstream(List<CacheKeys.GridCell> cells, String urlSuffix, boolean current,
+                                              List<String> params) throws Exception {
+        // Budujemy URL zapytania
+        StringBuilder latitudes = new StringBuilder();
+        StringBuilder longitudes = new StringBuilder();
+        for (CacheKeys.GridCell cell : cells) {
+            if (latitudes.length() > 0) {
+                latitudes.append(',');
+                longitudes.append(',');
+            }
+            latitudes.append(cell.latitudeText());
+            longitudes.append(cell.longitudeText());
+        }
+        StringBuilder apiUrl = new StringBuilder(API_URL);
+        apiUrl.append("?latitude=").append(latitudes);
+        apiUrl.append("&longitude=").append(longitudes);
+        apiUrl.append(urlSuffix);
+        apiUrl.append("&hourly=").append(String.join(",", params));
+
+        // Odpowiedź czytamy strumieniowo, prosto do kolumn (bez Stringa z treścią i bez drzewa JSON)
+        List<OpenMeteoParser.Response> responses;
+        try (InputStream in = transport.get("open-meteo", apiUrl.toString(), timeout)) {
+            responses = OpenMeteoParser.parseAll(in, params);
+        }
+        if (responses.size() != cells.size()) {
+            throw new IOException("Open-Meteo zwróciło " + responses.size() + " wyników dla "
+                    + cells.size() + " lokalizacji");
+        }
+
+        List<HourlyWeather> results = new ArrayList<>(responses.size());
+        for (OpenMeteoParser.Response response : responses) {
+            if (current) {
+                fillCurrent(response, params);
+            }
+            results.add(response.weather());
+        }
+        return results;
+    }
+
+    // Aktualne dane: temperatura i wiatr z "current_weather", reszta z godziny odpowiadającej "teraz"
+    private static void fillCurrent(OpenMeteoParser.Response response, List<String> params) {
+        HourlyWeather weather = response.weather();
+        Map<String, Double> current = response.current();
+
+        if (params.contains("temperature_2m") && !Double.isNaN(response.currentTemperature())) {
+            current.put("temperature_2m", response.currentTemperature());
+        }
+        if (params.contains("windspeed_10m") && !Double.isNaN(response.currentWindspeed())) {
+            current.put("windspeed_10m", response.currentWindspeed());
+        }
+        if (!weather.isEmpty() && response.currentTime() != null) {
+            int index = indexOfHour(weather, response.currentTime());
+            for (String param : List.of("surface_pressure", "precipitation", "soil_temperature_0cm")) {
+                if (weather.hasColumn(param)) {
+                    current.put(param, weather.getColumn(param)[index]);
+                }
             }
+        }
+    }
+
+    // Wersje asynchroniczne - wykonywane na wątkach wirtualnych, anulowanie przerywa zapytanie
 
-            String resultStr = result.toString();
-            jedis.setex(cacheKey, 43200, resultStr); // 12h TTL
-            return resultStr;
+    public CompletableFuture<HourlyWeather> getCurrentWeatherAsync(double latitude, double longitude, List<String> parameters) {
+        return AsyncTasks.supply(() -> getCurrentWeather(latitude, longitude, parameters));
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            return "Błąd podczas pobierania danych historycznych.";
+    public CompletableFuture<HourlyWeather> getWeatherForecastAsync(double latitude, double longitude, List<String> parameters, String startDate, String endDate) {
+        return AsyncTasks.supply(() -> getWeatherForecast(latitude, longitude, parameters, startDate, endDate));
+    }
+
+    public CompletableFuture<HourlyWeather> getHistoricalWeatherAsync(double latitude, double longitude, List<String> parameters, int pastDays) {
+        return AsyncTasks.supply(() -> getHistoricalWeather(latitude, longitude, parameters, pastDays));
+    }
+
+    public CompletableFuture<HourlyWeather> getStoredWeatherAsync(double latitude, double longitude, List<String> parameters, int pastDays) {
+        return AsyncTasks.supply(() -> getStoredWeather(latitude, longitude, parameters, pastDays));
+    }
+
+    // Indeks godziny odpowiadającej podanemu czasowi (lub ostatnia godzina, gdy brak dopasowania)
+    private static int indexOfHour(HourlyWeather weather, String isoTime) {
+        if (isoTime != null) {
+            long hour = OpenMeteoParser.toEpochHour(isoTime);
+            for (int i = 0; i < weather.size(); i++) {
+                if (weather.getEpochHour(i) == hour) {
+                    return i;
+                }
+            }
         }
+        return weather.size() - 1;
     }
 }
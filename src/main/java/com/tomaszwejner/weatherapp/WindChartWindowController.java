@@ -1,33 +1,29 @@
 package com.tomaszwejner.weatherapp;
 
-import javafx.application.Platform;
 import javafx.fxml.FXML;
-import javafx.scene.chart.CategoryAxis;
-import javafx.scene.chart.LineChart;
-import javafx.scene.chart.NumberAxis;
-import javafx.scene.chart.XYChart;
-import javafx.scene.control.Alert;
 import javafx.scene.control.Label;
-import javafx.scene.control.Tooltip;
-import javafx.stage.FileChooser;
-import javafx.util.Duration;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 public class WindChartWindowController {
 
-    public CategoryAxis xAxis;
-    public NumberAxis yAxis;
     private String cityName;
     private String startDate;
     private String endDate;
 
+    // Pełny wynik zapytania (wszystkie zmienne) - źródło eksportu
+    private HourlyWeather weather;
+
     @FXML
     Label chartTitleLabel;
     @FXML
-    private LineChart<String, Number> windChart;
+    private TimeSeriesChart windChart;
+
+    @FXML
+    public void initialize() {
+        windChart.setValueLabel("Prędkość wiatru (km/h)", " km/h");
+        windChart.setIncludeZero(true);
+    }
 
     private String simplifyDateForTitle(String input) {
         if (input == null) return "";
@@ -58,65 +54,23 @@ public class WindChartWindowController {
         updateTitle();
     }
 
-    public void setWindData(List<String> dates, List<Double> windSpeeds) {
-        XYChart.Series<String, Number> series = new XYChart.Series<>();
-        series.setName("Prędkość wiatru [km/h]");
-
-        for (int i = 0; i < dates.size() && i < windSpeeds.size(); i++) {
-            series.getData().add(new XYChart.Data<>(dates.get(i), windSpeeds.get(i)));
-        }
-
-        windChart.getData().clear();
-        windChart.getData().add(series);
-
-        // Dodaj tooltipy po utworzeniu węzłów
-        Platform.runLater(() -> {
-            for (int i = 0; i < series.getData().size(); i++) {
-                XYChart.Data<String, Number> dataPoint = series.getData().get(i);
-                String x = dates.get(i);
-                Double y = windSpeeds.get(i);
-
-                Tooltip tooltip = new Tooltip(x + ", " + y + " km/h");
-                tooltip.setShowDelay(Duration.millis(100));
+    // Ustawia pełny wynik zapytania eksportowany przyciskiem "Eksportuj dane"
+    public void setWeather(HourlyWeather weather) {
+        this.weather = weather;
+    }
 
-                Tooltip.install(dataPoint.getNode(), tooltip);
-            }
-        });
+    public void setWindData(long[] epochHours, List<Double> windSpeeds) {
+        windChart.clear();
+        windChart.addSeries("Prędkość wiatru [km/h]", epochHours, windSpeeds);
     }
     //Esksport danych
     @FXML
     private void onExportDataClicked() {
-        FileChooser fileChooser = new FileChooser();
-        fileChooser.setTitle("Zapisz dane wykresu");
-        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Plik tekstowy", "*.txt"));
-        String defaultFileName = String.format("Wind_%s_from_%s_to_%s.txt",
+        // Domyślna nazwa pliku oparta na metadanych (miasto, daty)
+        String baseName = String.format("Wind_%s_from_%s_to_%s",
                 cityName == null ? "Unknown" : cityName,
-                startDate == null ? "start" : startDate.replace(":", "-"),
-                endDate == null ? "end" : endDate.replace(":", "-"));
-        fileChooser.setInitialFileName(defaultFileName);
-        File file = fileChooser.showSaveDialog(windChart.getScene().getWindow());
-
-        if (file != null) {
-            try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
-                writer.println("Miasto: " + (cityName != null ? cityName : "Nieznane"));
-                writer.println();
-                for (XYChart.Series<String, Number> series : windChart.getData()) {
-                    writer.println("Seria: " + series.getName());
-                    writer.println("Data;Opady (mm)");
-                    for (XYChart.Data<String, Number> data : series.getData()) {
-                        writer.println(data.getXValue() + ";" + data.getYValue());
-                    }
-                    writer.println();
-                }
-                Alert alert = new Alert(Alert.AlertType.INFORMATION, "Dane zostały wyeksportowane.");
-                alert.showAndWait();
-            } catch (IOException e) {
-                Alert alert = new Alert(Alert.AlertType.ERROR, "Błąd podczas zapisu danych: " + e.getMessage());
-                alert.showAndWait();
-            }
-        }
+                startDate == null ? "start" : startDate,
+                endDate == null ? "end" : endDate);
+        ExportDialog.show(windChart.getScene().getWindow(), weather, baseName);
     }
 }
-
-
-
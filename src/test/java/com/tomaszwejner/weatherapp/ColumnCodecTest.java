@@ -0,0 +1,162 @@
+package com.tomaszwejner.weatherapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColumnCodecTest {
+
+    @Test
+    void scaledValuesWithGapsRoundTrip() {
+        double[] values = {12.3, 12.5, Double.NaN, 11.9, -0.4, Double.NaN, 0.0, 7.25};
+        assertRoundTrip(values, 13.1);
+        assertEquals(2, ColumnCodec.scaledDecimals(values));
+    }
+
+    @Test
+    void emptyColumnRoundTrip() {
+        assertRoundTrip(new double[0], Double.NaN);
+        assertRoundTrip(new double[0], 4.5);
+    }
+
+    @Test
+    void singleValueRoundTrip() {
+        assertRoundTrip(new double[] {21.7}, Double.NaN);
+        assertRoundTrip(new double[] {Double.NaN}, Double.NaN);
+    }
+
+    @Test
+    void onlyMissingValuesRoundTrip() {
+        double[] values = new double[100];
+        Arrays.fill(values, Double.NaN);
+        assertRoundTrip(values, Double.NaN);
+    }
+
+    // -0.0 nie przetrwałby zapisu jako liczba całkowita, więc kolumna idzie kodowaniem XOR
+    @Test
+    void negativeZeroKeepsItsSign() {
+        double[] values = {1.0, -0.0, 2.0};
+        assertEquals(-1, ColumnCodec.scaledDecimals(values));
+        assertRoundTrip(values, -0.0);
+    }
+
+    @Test
+    void arbitraryDoublesUseXorAndRoundTrip() {
+        Random random = new Random(42);
+        double[] values = new double[500];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 17 == 0 ? Double.NaN : random.nextGaussian() * 1e6;
+        }
+        values[1] = Double.MAX_VALUE;
+        values[2] = Double.MIN_VALUE;
+        values[3] = Double.POSITIVE_INFINITY;
+        values[4] = Double.NEGATIVE_INFINITY;
+        assertEquals(-1, ColumnCodec.scaledDecimals(values));
+        assertRoundTrip(values, Math.PI);
+    }
+
+    // Długa, powtarzalna kolumna przechodzi przez Deflate i wychodzi krótsza niż bez kompresji
+    @Test
+    void repetitiveColumnIsDeflated() {
+        double[] values = new double[24 * 92];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (i % 24) * 0.5;
+        }
+        String encoded = assertRoundTrip(values, Double.NaN);
+        byte[] bytes = Base64.getDecoder().decode(encoded.substring(2));
+        assertEquals(1, bytes[0] & 1, "brak flagi Deflate");
+        assertTrue(encoded.length() < values.length / 2, "za długa wartość: " + encoded.length());
+    }
+
+    @Test
+    void textVersionIsStillReadable() {
+        double[] values = {1.5, Double.NaN, -3.25};
+        String text = ColumnCodec.encodeText(values, 2.0);
+        assertFalse(text.startsWith("~"));
+        ColumnCodec.CachedColumn column = ColumnCodec.decodeColumn(text);
+        assertBitsEqual(values, column.values());
+        assertBitsEqual(new double[] {2.0}, new double[] {column.current()});
+
+        ColumnCodec.CachedColumn empty = ColumnCodec.decodeColumn(ColumnCodec.encodeText(new double[0], Double.NaN));
+        assertEquals(0, empty.values().length);
+        assertTrue(Double.isNaN(empty.current()));
+    }
+
+    @Test
+    void unknownEncodingIsRejected() {
+        String encoded = ColumnCodec.encodeBinary(new double[] {1.0, 2.0}, Double.NaN);
+        byte[] bytes = Base64.getDecoder().decode(encoded.substring(2));
+        // flagi, liczba godzin, kodowanie wartości
+        bytes[2] = 9;
+        String broken = "~1" + Base64.getEncoder().encodeToString(bytes);
+        assertThrows(IllegalArgumentException.class, () -> ColumnCodec.decodeColumn(broken));
+    }
+
+    @Test
+    void timeAxisRoundTrip() {
+        long[][] cases = {
+                {},
+                {480_000},
+                {480_000, 480_001, 480_002},
+                {-30, -29, -28, -27},
+                {-5, -3, 0, 7},
+                {480_000, 480_002, 480_001},
+        };
+        for (long[] hours : cases) {
+            assertArrayEquals(hours, ColumnCodec.decodeTime(ColumnCodec.encodeTime(hours)));
+        }
+        assertEquals("-30+4", ColumnCodec.encodeTime(cases[3]));
+    }
+
+    @Test
+    void varLongRoundTrip() throws IOException {
+        long[] values = {0, 1, -1, 63, -64, 64, 127, 128, -129, Integer.MAX_VALUE, Integer.MIN_VALUE,
+                Long.MAX_VALUE, Long.MIN_VALUE};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (long value : values) {
+            ColumnCodec.writeVarLong(out, value);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (long value : values) {
+            assertEquals(value, ColumnCodec.readVarLong(in));
+        }
+        assertEquals(0, in.available());
+
+        // Małe różnice zajmują jeden bajt
+        bytes.reset();
+        ColumnCodec.writeVarLong(out, -64);
+        ColumnCodec.writeVarLong(out, 63);
+        assertEquals(2, bytes.size());
+    }
+
+    private static String assertRoundTrip(double[] values, double current) {
+        String encoded = ColumnCodec.encodeBinary(values, current);
+        assertTrue(encoded.startsWith("~1"));
+        ColumnCodec.CachedColumn column = ColumnCodec.decodeColumn(encoded);
+        assertBitsEqual(values, column.values());
+        assertBitsEqual(new double[] {current}, new double[] {column.current()});
+        return encoded;
+    }
+
+    // Porównanie bit w bit: NaN == NaN, a 0.0 != -0.0
+    private static void assertBitsEqual(double[] expected, double[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(Double.doubleToLongBits(expected[i]), Double.doubleToLongBits(actual[i]), "godzina " + i);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.tomaszwejner.weatherapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GazetteerTest {
+
+    private static final String CSV = """
+            # nazwa,lat,lon,populacja
+            Warszawa,52.2297,21.0122,1860000
+            Kraków,50.0647,19.9450,800000
+            Nowa Wieś,53.5,19.1,300
+            Nowa Wieś,50.1,20.5,1200
+            to nie jest linia,abc,1
+            Gdańsk,54.352,18.6466
+            """;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void findByNormalizedName() throws IOException {
+        Gazetteer gazetteer = build(CSV);
+        assertEquals(5, gazetteer.size());
+
+        Gazetteer.Place krakow = gazetteer.find("  KRAKÓW ");
+        assertNotNull(krakow);
+        assertEquals("Kraków", krakow.name());
+        assertEquals(50.0647, krakow.latitude(), 1e-5);
+        assertEquals(800000, krakow.population());
+
+        // Przy powtórzonej nazwie wygrywa najludniejsze miejsce
+        assertEquals(1200, gazetteer.find("nowa wieś").population());
+        assertEquals(0, gazetteer.find("Gdańsk").population());
+        assertNull(gazetteer.find("Gdansk"));
+        assertNull(gazetteer.find(""));
+    }
+
+    @Test
+    void geoNamesAlternateNames() throws IOException {
+        String line = String.join("\t", "3094802", "Kraków", "Krakow", "Cracovia,Cracow,Krakau",
+                "50.06143", "19.93658", "P", "PPLA", "PL", "", "72", "1261", "", "", "755050");
+        Gazetteer gazetteer = build(line + "\n");
+        assertEquals(1, gazetteer.size());
+        assertEquals("Kraków", gazetteer.find("Krakow").name());
+        assertEquals("Kraków", gazetteer.find("cracow").name());
+        assertEquals(755050, gazetteer.find("Krakau").population());
+    }
+
+    @Test
+    void nearestMatchesBruteForce() throws IOException {
+        Random random = new Random(7);
+        float[][] points = new float[3000][];
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < points.length; i++) {
+            // Co dziesiąty punkt powtarza wcześniejszy (te same współrzędne)
+            points[i] = i % 10 == 9
+                    ? points[random.nextInt(i)]
+                    : new float[] {(float) (49 + random.nextDouble() * 6), (float) (14 + random.nextDouble() * 10)};
+            csv.append("m").append(i).append(',').append(points[i][0]).append(',').append(points[i][1]).append('\n');
+        }
+        Gazetteer gazetteer = build(csv.toString());
+        assertEquals(points.length, gazetteer.size());
+
+        for (int q = 0; q < 500; q++) {
+            double lat = 48 + random.nextDouble() * 8;
+            double lon = 13 + random.nextDouble() * 12;
+            double cosLat = Math.cos(Math.toRadians(lat));
+            double expected = Double.MAX_VALUE;
+            for (float[] point : points) {
+                expected = Math.min(expected, distance(lat, lon, cosLat, point[0], point[1]));
+            }
+            Gazetteer.Place place = gazetteer.nearest(lat, lon, 10_000);
+            assertNotNull(place);
+            assertEquals(expected, distance(lat, lon, cosLat, place.latitude(), place.longitude()), 1e-12, "zapytanie " + q);
+        }
+    }
+
+    @Test
+    void nearestRespectsMaxDistance() throws IOException {
+        Gazetteer gazetteer = build(CSV);
+        assertEquals("Warszawa", gazetteer.nearest(52.25, 21.0, 25).name());
+        // Ok. 0.5° szerokości od Warszawy, czyli ponad 50 km
+        assertNull(gazetteer.nearest(52.75, 21.0122, 25));
+        assertEquals("Warszawa", gazetteer.nearest(52.75, 21.0122, 100).name());
+    }
+
+    @Test
+    void duplicatePointsAndSinglePlace() throws IOException {
+        Gazetteer same = build("a,50,20\nb,50,20\nc,50,20\n");
+        Gazetteer.Place place = same.nearest(50.01, 20.01, 25);
+        assertNotNull(place);
+        assertEquals(50, place.latitude(), 1e-6);
+
+        Gazetteer single = build("Jedyne,51.5,17.25,10\n");
+        assertEquals("Jedyne", single.nearest(-80, -170, 100_000).name());
+        assertEquals("Jedyne", single.find("jedyne").name());
+    }
+
+    @Test
+    void emptyList() throws IOException {
+        Gazetteer gazetteer = build("# pusta lista\n");
+        assertEquals(0, gazetteer.size());
+        assertNull(gazetteer.find("Warszawa"));
+        assertNull(gazetteer.nearest(52, 21, 1000));
+    }
+
+    @Test
+    void damagedFileIsRejected() throws IOException {
+        Path file = dir.resolve("pl.gaz");
+        Gazetteer.build(new ByteArrayInputStream(CSV.getBytes(StandardCharsets.UTF_8)), file);
+        byte[] valid = Files.readAllBytes(file);
+
+        Path damaged = dir.resolve("damaged.gaz");
+        Files.write(damaged, Arrays.copyOf(valid, valid.length - 3));
+        assertThrows(IOException.class, () -> Gazetteer.open(damaged));
+
+        Files.write(damaged, Arrays.copyOf(valid, 10));
+        assertThrows(IOException.class, () -> Gazetteer.open(damaged));
+
+        Files.write(damaged, new byte[0]);
+        assertThrows(IOException.class, () -> Gazetteer.open(damaged));
+
+        Files.write(damaged, "Warszawa,52.2,21.0\n".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> Gazetteer.open(damaged));
+
+        // Liczba miejsc niezgodna z przesunięciem tablicy napisów
+        Files.write(damaged, valid);
+        try (RandomAccessFile raf = new RandomAccessFile(damaged.toFile(), "rw")) {
+            raf.seek(8);
+            raf.writeInt(1000);
+        }
+        assertThrows(IOException.class, () -> Gazetteer.open(damaged));
+
+        // Przesunięcie nazwy pierwszego miejsca poza plikiem
+        Files.write(damaged, valid);
+        try (RandomAccessFile raf = new RandomAccessFile(damaged.toFile(), "rw")) {
+            raf.seek(24 + 8);
+            raf.writeInt(1 << 20);
+        }
+        assertThrows(IOException.class, () -> Gazetteer.open(damaged));
+    }
+
+    private Gazetteer build(String source) throws IOException {
+        Path file = Files.createTempFile(dir, "test", ".gaz");
+        Gazetteer.build(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)), file);
+        return Gazetteer.open(file);
+    }
+
+    // Ta sama miara co w Gazetteer.nearest (kwadrat odległości w stopniach, przybliżenie równoprostokątne)
+    private static double distance(double lat, double lon, double cosLat, double placeLat, double placeLon) {
+        double dLat = lat - placeLat;
+        double dLon = (lon - placeLon) * cosLat;
+        return dLat * dLat + dLon * dLon;
+    }
+}
@@ -0,0 +1,207 @@
+package com.tomaszwejner.weatherapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeSeriesStoreTest {
+
+    private static final int SEGMENT_BYTES = 64 * 16;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void appendAndReadWithGaps() throws IOException {
+        try (TimeSeriesStore store = TimeSeriesStore.open(dir, SEGMENT_BYTES)) {
+            assertEquals(3, store.append("52.2_21.0", weather(480_000, 1.5, Double.NaN, 2.5, -0.5)));
+
+            assertArrayEquals(new double[] {Double.NaN, 1.5, Double.NaN, 2.5, -0.5, Double.NaN},
+                    store.read("52.2_21.0", "t", 479_999, 6));
+            assertArrayEquals(new double[] {Double.NaN, Double.NaN}, store.read("52.2_21.0", "p", 480_000, 2));
+            assertArrayEquals(new double[] {Double.NaN}, store.read("0.0_0.0", "t", 480_000, 1));
+            assertEquals(0, store.read("52.2_21.0", "t", 480_000, 0).length);
+        }
+    }
+
+    @Test
+    void sameValuesAreNotWrittenAgain() throws IOException {
+        try (TimeSeriesStore store = TimeSeriesStore.open(dir, SEGMENT_BYTES)) {
+            assertEquals(3, store.append("a", weather(480_000, 1, 2, 3)));
+            long size = store.sizeInBytes();
+
+            assertEquals(0, store.append("a", weather(480_000, 1, 2, 3)));
+            assertEquals(size, store.sizeInBytes());
+
+            // Nowsza wartość tej samej godziny zastępuje starszą
+            assertEquals(1, store.append("a", weather(480_000, 1, 7, 3)));
+            assertArrayEquals(new double[] {1, 7, 3}, store.read("a", "t", 480_000, 3));
+        }
+    }
+
+    // Godziny przed 1970 i doby przecinające zero (floorDiv/floorMod)
+    @Test
+    void negativeEpochHours() throws IOException {
+        double[] values = new double[60];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i - 30;
+        }
+        try (TimeSeriesStore store = TimeSeriesStore.open(dir, SEGMENT_BYTES * 4)) {
+            store.append("a", weather(-30, values));
+            assertArrayEquals(values, store.read("a", "t", -30, 60));
+            assertArrayEquals(new double[] {-1, 0, 1}, store.read("a", "t", -1, 3));
+        }
+    }
+
+    @Test
+    void hoursFromBeforeHourAreSkipped() throws IOException {
+        try (TimeSeriesStore store = TimeSeriesStore.open(dir, SEGMENT_BYTES)) {
+            assertEquals(2, store.append("a", weather(47, 1, 2, 3, 4), 49));
+            assertArrayEquals(new double[] {1, 2, Double.NaN, Double.NaN}, store.read("a", "t", 47, 4));
+        }
+    }
+
+    @Test
+    void reopenRebuildsIndex() throws IOException {
+        double[] values = new double[150];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i * 0.1;
+        }
+        long size;
+        try (TimeSeriesStore store = TimeSeriesStore.open(dir, SEGMENT_BYTES)) {
+            store.append("a", weather(480_000, values));
+            store.append("b", weather(480_100, 5, 6));
+            size = store.sizeInBytes();
+            assertTrue(store.segmentCount() > 1);
+        }
+        try (TimeSeriesStore store = TimeSeriesStore.open(dir, SEGMENT_BYTES)) {
+            assertEquals(size, store.sizeInBytes());
+            assertArrayEquals(values, store.read("a", "t", 480_000, values.length));
+            assertArrayEquals(new double[] {5, 6}, store.read("b", "t", 480_100, 2));
+            assertEquals(0, store.append("a", weather(480_000, values)));
+        }
+    }
+
+    @Test
+    void compactionKeepsLatestValues() throws IOException {
+        try (TimeSeriesStore store = TimeSeriesStore.open(dir, SEGMENT_BYTES)) {
+            for (int version = 0; version < 5; version++) {
+                double[] values = new double[48];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = version * 100 + i;
+                }
+                store.append("a", weather(480_000, values));
+            }
+            int before = store.segmentCount();
+            assertTrue(store.compact() > 0);
+            assertTrue(store.segmentCount() < before);
+            assertEquals(48 * 16, store.sizeInBytes());
+            assertEquals(400, store.read("a", "t", 480_000, 1)[0]);
+            assertEquals(447, store.read("a", "t", 480_047, 1)[0]);
+        }
+        try (TimeSeriesStore store = TimeSeriesStore.open(dir, SEGMENT_BYTES)) {
+            assertEquals(400, store.read("a", "t", 480_000, 1)[0]);
+            assertEquals(447, store.read("a", "t", 480_047, 1)[0]);
+        }
+        try (var files = Files.list(dir)) {
+            assertTrue(files.filter(p -> p.getFileName().toString().startsWith("seg-")).count() <= 2);
+        }
+    }
+
+    // Kompaktowanie w tle i wywołanie bezpośrednie nie mogą przepisywać tych samych segmentów naraz
+    @Test
+    void concurrentCompactionsAreSerialized() throws Exception {
+        try (TimeSeriesStore store = TimeSeriesStore.open(dir, SEGMENT_BYTES)) {
+            for (int version = 0; version < 20; version++) {
+                double[] values = new double[48];
+                Arrays.fill(values, version);
+                store.append("a", weather(480_000, values));
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<Integer>> runs = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    runs.add(executor.submit(store::compact));
+                }
+                int compacted = 0;
+                for (Future<Integer> run : runs) {
+                    compacted += run.get();
+                }
+                assertTrue(compacted > 0);
+            } finally {
+                executor.shutdown();
+            }
+            assertEquals(19, store.read("a", "t", 480_000, 1)[0]);
+            assertEquals(19, store.read("a", "t", 480_047, 1)[0]);
+        }
+    }
+
+    // Awaria w połowie dopisywania: rekord bez id i niedokończony wpis słownika serii
+    @Test
+    void reopenAfterCrashedAppend() throws IOException {
+        try (TimeSeriesStore store = TimeSeriesStore.open(dir, SEGMENT_BYTES)) {
+            store.append("a", weather(480_000, 1, 2));
+        }
+        try (RandomAccessFile segment = new RandomAccessFile(dir.resolve("seg-000001.dat").toFile(), "rw")) {
+            segment.seek(2 * 16 + 4);
+            segment.writeInt(480_002);
+            segment.writeDouble(99);
+        }
+        Files.writeString(dir.resolve("series.txt"), "2\ta|", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        try (TimeSeriesStore store = TimeSeriesStore.open(dir, SEGMENT_BYTES)) {
+            assertArrayEquals(new double[] {1, 2, Double.NaN}, store.read("a", "t", 480_000, 3));
+            assertEquals(2 * 16, store.sizeInBytes());
+            store.append("b", weather(480_000, 3));
+        }
+        try (TimeSeriesStore store = TimeSeriesStore.open(dir, SEGMENT_BYTES)) {
+            assertArrayEquals(new double[] {1, 2}, store.read("a", "t", 480_000, 2));
+            assertArrayEquals(new double[] {3}, store.read("b", "t", 480_000, 1));
+        }
+        assertEquals("1\ta|t\n2\tb|t\n", Files.readString(dir.resolve("series.txt"), StandardCharsets.UTF_8));
+    }
+
+    // Plik segmentu obcięty w połowie rekordu (np. kopia przerwana w trakcie)
+    @Test
+    void reopenAfterTruncatedSegment() throws IOException {
+        try (TimeSeriesStore store = TimeSeriesStore.open(dir, SEGMENT_BYTES)) {
+            store.append("a", weather(480_000, 1, 2, 3, 4));
+        }
+        try (RandomAccessFile segment = new RandomAccessFile(dir.resolve("seg-000001.dat").toFile(), "rw")) {
+            segment.setLength(2 * 16 + 7);
+        }
+        try (TimeSeriesStore store = TimeSeriesStore.open(dir, SEGMENT_BYTES)) {
+            assertArrayEquals(new double[] {1, 2, Double.NaN, Double.NaN}, store.read("a", "t", 480_000, 4));
+            assertEquals(2, store.append("a", weather(480_000, 1, 2, 3, 4)));
+            assertArrayEquals(new double[] {1, 2, 3, 4}, store.read("a", "t", 480_000, 4));
+        }
+    }
+
+    private static HourlyWeather weather(long firstHour, double... values) {
+        long[] hours = new long[values.length];
+        for (int i = 0; i < hours.length; i++) {
+            hours[i] = firstHour + i;
+        }
+        Map<String, double[]> columns = new LinkedHashMap<>();
+        columns.put("t", values);
+        return new HourlyWeather(0, 0, hours, columns, Map.of());
+    }
+}
@@ -0,0 +1,390 @@
+package com.tomaszwejner.weatherapp;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lokalny serwer zastępujący Open-Meteo i Nominatim w testach wydajności bez dostępu do sieci.
+ *
+ * Serwuje nagrane odpowiedzi (katalog fixtures) dla:
+ *  /v1/forecast - prognoza, historia (past_days) i aktualna pogoda (current_weather),
+ *                 dla start_date/end_date nagrane wartości są przenoszone na żądany zakres dni,
+ *                 dla listy współrzędnych zwraca tablicę odpowiedzi,
+ *  /search      - wyszukiwanie miasta (Nominatim),
+ *  /reverse     - reverse geocode (Nominatim),
+ * i wstrzykuje opóźnienia oraz awarie, żeby odtworzyć problemy z długim ogonem czasów odpowiedzi.
+ *
+ * Serwer jest napisany na gołych gniazdach (HTTP/1.1, keep-alive), bo tylko tak da się zasymulować
+ * zerwanie połączenia (RST) i powolne wysyłanie treści.
+ *
+ * Uruchomienie (z klasami testowymi na ścieżce):
+ *   java -Dweatherapp.stub.latency=lognormal:80:0.7 -Dweatherapp.stub.rate5xx=0.02 ... UpstreamStubServer
+ * a aplikację kierujemy na niego przez weatherapp.openmeteo.baseUrl i weatherapp.nominatim.baseUrl.
+ *
+ * Ustawienia (weatherapp.stub.*):
+ *  port                  - port (domyślnie 8089, 0 = dowolny wolny)
+ *  fixtures              - katalog z nagranymi odpowiedziami (domyślnie fixtures z zasobów testowych)
+ *  latency               - rozkład opóźnienia przed odpowiedzią: none, fixed:MS, uniform:MIN:MAX,
+ *                          lognormal:MEDIANA:SIGMA (domyślnie none)
+ *  spikeRate, spikeMs    - odsetek zapytań z dodatkowym opóźnieniem (ogon rozkładu) i jego długość
+ *  rate429               - odsetek odpowiedzi 429 Too Many Requests (z nagłówkiem Retry-After)
+ *  rate5xx               - odsetek odpowiedzi 500/502/503/504
+ *  resetRate             - odsetek połączeń zrywanych (RST) zaraz po odebraniu zapytania
+ *  slowBodyRate          - odsetek odpowiedzi wysyłanych powoli
+ *  slowBodyBytesPerSecond - tempo wysyłania powolnej odpowiedzi (domyślnie 2048 B/s)
+ */
+public class UpstreamStubServer {
+
+    /**
+     * Konfiguracja opóźnień i awarii. Odsetki są z przedziału 0-1 i losowane niezależnie dla każdego zapytania.
+     */
+    public record Faults(Latency latency, double spikeRate, long spikeMillis, double rate429, double rate5xx,
+                         double resetRate, double slowBodyRate, int slowBodyBytesPerSecond) {
+
+        public static Faults none() {
+            return new Faults(Latency.parse("none"), 0, 0, 0, 0, 0, 0, 2048);
+        }
+
+        public static Faults fromConfig() {
+            return new Faults(
+                    Latency.parse(AppConfig.get("weatherapp.stub.latency", "none")),
+                    AppConfig.getDouble("weatherapp.stub.spikeRate", 0),
+                    AppConfig.getLong("weatherapp.stub.spikeMs", 3000),
+                    AppConfig.getDouble("weatherapp.stub.rate429", 0),
+                    AppConfig.getDouble("weatherapp.stub.rate5xx", 0),
+                    AppConfig.getDouble("weatherapp.stub.resetRate", 0),
+                    AppConfig.getDouble("weatherapp.stub.slowBodyRate", 0),
+                    AppConfig.getInt("weatherapp.stub.slowBodyBytesPerSecond", 2048));
+        }
+    }
+
+    /**
+     * Rozkład opóźnienia odpowiedzi w milisekundach.
+     * lognormal:MEDIANA:SIGMA dobrze oddaje typowy rozkład czasów odpowiedzi API (długi prawy ogon).
+     */
+    public record Latency(String kind, double a, double b) {
+
+        public static Latency parse(String spec) {
+            String[] parts = spec.trim().split(":");
+            return switch (parts[0]) {
+                case "none", "0" -> new Latency("none", 0, 0);
+                case "fixed" -> new Latency("fixed", Double.parseDouble(parts[1]), 0);
+                case "uniform" -> new Latency("uniform", Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                case "lognormal" -> new Latency("lognormal", Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                default -> throw new IllegalArgumentException("Nieznany rozkład opóźnienia: " + spec);
+            };
+        }
+
+        long sampleMillis(ThreadLocalRandom random) {
+            return switch (kind) {
+                case "fixed" -> (long) a;
+                case "uniform" -> (long) (a + random.nextDouble() * (b - a));
+                case "lognormal" -> (long) (a * Math.exp(b * random.nextGaussian()));
+                default -> 0;
+            };
+        }
+    }
+
+    private static final int[] SERVER_ERRORS = {500, 502, 503, 504};
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Path fixturesDir;
+    private final AtomicLong requests = new AtomicLong();
+    private volatile Faults faults;
+
+    public UpstreamStubServer(int port, Faults faults, Path fixturesDir) throws IOException {
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        this.faults = faults;
+        this.fixturesDir = fixturesDir;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String dir = AppConfig.get("weatherapp.stub.fixtures", null);
+        UpstreamStubServer server = new UpstreamStubServer(AppConfig.getInt("weatherapp.stub.port", 8089),
+                Faults.fromConfig(), dir != null ? Path.of(dir) : null);
+        server.start();
+
+        System.out.println("Serwer zastępczy działa: " + server.getBaseUrl() + " (" + server.faults + ")");
+        System.out.println("Aplikację uruchom z -Dweatherapp.openmeteo.baseUrl=" + server.getBaseUrl()
+                + " -Dweatherapp.nominatim.baseUrl=" + server.getBaseUrl());
+    }
+
+    // Pętla przyjmowania połączeń działa na zwykłym (nie demonowym) wątku - samodzielnie uruchomiony
+    // serwer działa do zatrzymania procesu, choć same połączenia obsługują wątki wirtualne
+    public void start() {
+        Thread.ofPlatform().name("upstream-stub-accept").daemon(false).start(this::acceptLoop);
+    }
+
+    public void stop() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort();
+    }
+
+    // Liczba obsłużonych zapytań (razem z tymi, które zakończyły się awarią)
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    // Konfigurację awarii można zmieniać w trakcie działania (np. między fazami testu)
+    public void setFaults(Faults faults) {
+        this.faults = faults;
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                executor.submit(() -> serve(socket));
+            } catch (IOException e) {
+                // Gniazdo zamknięte przez stop()
+            }
+        }
+    }
+
+    // Obsługuje kolejne zapytania na jednym połączeniu (keep-alive)
+    private void serve(Socket socket) {
+        try (socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+
+            while (true) {
+                String requestLine = readLine(in);
+                if (requestLine == null || requestLine.isEmpty()) {
+                    return;
+                }
+                boolean keepAlive = true;
+                String header;
+                while ((header = readLine(in)) != null && !header.isEmpty()) {
+                    if (header.regionMatches(true, 0, "Connection:", 0, 11) && header.toLowerCase().contains("close")) {
+                        keepAlive = false;
+                    }
+                }
+
+                String[] parts = requestLine.split(" ");
+                requests.incrementAndGet();
+                if (parts.length < 2 || !respond(socket, out, parts[0], URI.create(parts[1]))) {
+                    return;
+                }
+                if (!keepAlive) {
+                    return;
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // Klient zamknął połączenie albo serwer jest zatrzymywany
+        }
+    }
+
+    // Wysyła odpowiedź; false, gdy połączenie zostało celowo zerwane
+    private boolean respond(Socket socket, OutputStream out, String method, URI uri) throws IOException, InterruptedException {
+        Faults current = faults;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        long delay = current.latency().sampleMillis(random);
+        if (random.nextDouble() < current.spikeRate()) {
+            delay += current.spikeMillis();
+        }
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+
+        if (random.nextDouble() < current.resetRate()) {
+            // SO_LINGER 0 sprawia, że close() wysyła RST zamiast zwykłego zamknięcia
+            socket.setSoLinger(true, 0);
+            socket.close();
+            return false;
+        }
+        if (random.nextDouble() < current.rate429()) {
+            write(out, 429, "Too Many Requests", "{\"error\":true,\"reason\":\"Too many concurrent requests\"}",
+                    "Retry-After: 1\r\n", 0);
+            return true;
+        }
+        if (random.nextDouble() < current.rate5xx()) {
+            int status = SERVER_ERRORS[random.nextInt(SERVER_ERRORS.length)];
+            write(out, status, "Server Error", "{\"error\":true,\"reason\":\"Upstream error\"}", "", 0);
+            return true;
+        }
+        if (!method.equals("GET")) {
+            write(out, 405, "Method Not Allowed", "{\"error\":true}", "", 0);
+            return true;
+        }
+
+        String body = body(uri);
+        if (body == null) {
+            write(out, 404, "Not Found", "{\"error\":true,\"reason\":\"Not found\"}", "", 0);
+            return true;
+        }
+        int bytesPerSecond = random.nextDouble() < current.slowBodyRate() ? current.slowBodyBytesPerSecond() : 0;
+        write(out, 200, "OK", body, "", bytesPerSecond);
+        return true;
+    }
+
+    // Wybiera nagraną odpowiedź dla adresu (null = nieznany endpoint)
+    private String body(URI uri) throws IOException {
+        String query = uri.getRawQuery() != null ? uri.getRawQuery() : "";
+        switch (uri.getPath()) {
+            case "/v1/forecast": {
+                String fixture = query.contains("past_days=") ? "openmeteo-history-30d.json"
+                        : query.contains("current_weather=true") ? "openmeteo-current.json"
+                        : "openmeteo-forecast-16d.json";
+                String single = fixture(fixture);
+                String startDate = parameter(query, "start_date");
+                String endDate = parameter(query, "end_date");
+                if (startDate != null && endDate != null) {
+                    single = shiftToRange(single, LocalDate.parse(startDate), LocalDate.parse(endDate));
+                }
+
+                // Lista współrzędnych: tablica z jedną odpowiedzią na każdy punkt
+                int locations = locationCount(query);
+                if (locations <= 1) {
+                    return single;
+                }
+                StringBuilder array = new StringBuilder(single.length() * locations + locations + 1).append('[');
+                for (int i = 0; i < locations; i++) {
+                    if (i > 0) array.append(',');
+                    array.append(single);
+                }
+                return array.append(']').toString();
+            }
+            case "/search":
+                return fixture("nominatim-search.json");
+            case "/reverse":
+                return fixture("nominatim-reverse.json");
+            default:
+                return null;
+        }
+    }
+
+    private static String parameter(String query, String name) {
+        for (String pair : query.split("&")) {
+            if (pair.startsWith(name + "=")) {
+                return pair.substring(name.length() + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Odpowiedź z osią czasu od startDate 00:00 do endDate 23:00; wartości każdej zmiennej
+     * są brane po kolei (w kółko) z nagranej odpowiedzi.
+     */
+    private static String shiftToRange(String recorded, LocalDate startDate, LocalDate endDate) {
+        JsonObject response = JsonParser.parseString(recorded).getAsJsonObject();
+        JsonObject hourly = response.getAsJsonObject("hourly");
+        int hours = (int) (ChronoUnit.DAYS.between(startDate, endDate) + 1) * 24;
+
+        JsonObject shifted = new JsonObject();
+        JsonArray time = new JsonArray(hours);
+        LocalDateTime first = startDate.atStartOfDay();
+        for (int i = 0; i < hours; i++) {
+            time.add(first.plusHours(i).toString());
+        }
+        shifted.add("time", time);
+        for (String name : hourly.keySet()) {
+            if (name.equals("time")) {
+                continue;
+            }
+            JsonArray source = hourly.getAsJsonArray(name);
+            JsonArray values = new JsonArray(hours);
+            for (int i = 0; i < hours; i++) {
+                values.add(source.get(i % source.size()));
+            }
+            shifted.add(name, values);
+        }
+        response.add("hourly", shifted);
+        return response.toString();
+    }
+
+    private static int locationCount(String query) {
+        for (String pair : query.split("&")) {
+            if (pair.startsWith("latitude=")) {
+                return pair.substring("latitude=".length()).split("%2C|,").length;
+            }
+        }
+        return 1;
+    }
+
+    private String fixture(String name) throws IOException {
+        if (fixturesDir != null) {
+            return Files.readString(fixturesDir.resolve(name));
+        }
+        try (InputStream in = UpstreamStubServer.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IOException("Brak pliku fixtures/" + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Zapisuje odpowiedź. Przy bytesPerSecond > 0 treść jest wysyłana kawałkami z przerwami
+     * (nagłówki przychodzą od razu, a ciało ciągnie się - typowy objaw przeciążonego serwera).
+     */
+    private static void write(OutputStream out, int status, String reason, String body, String extraHeaders,
+                              int bytesPerSecond) throws IOException, InterruptedException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        String headers = "HTTP/1.1 " + status + " " + reason + "\r\n"
+                + "Content-Type: application/json; charset=utf-8\r\n"
+                + "Content-Length: " + bytes.length + "\r\n"
+                + extraHeaders
+                + "\r\n";
+        out.write(headers.getBytes(StandardCharsets.US_ASCII));
+
+        if (bytesPerSecond <= 0) {
+            out.write(bytes);
+            out.flush();
+            return;
+        }
+
+        out.flush();
+        int chunk = Math.max(1, bytesPerSecond / 10);
+        for (int offset = 0; offset < bytes.length; offset += chunk) {
+            out.write(bytes, offset, Math.min(chunk, bytes.length - offset));
+            out.flush();
+            Thread.sleep(100);
+        }
+    }
+
+    // Czyta linię zakończoną CRLF (null na końcu strumienia)
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                byte[] bytes = line.toByteArray();
+                int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+                return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+            }
+            line.write(b);
+        }
+        return line.size() > 0 ? line.toString(StandardCharsets.ISO_8859_1) : null;
+    }
+}
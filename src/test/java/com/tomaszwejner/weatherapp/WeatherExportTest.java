@@ -0,0 +1,141 @@
+package com.tomaszwejner.weatherapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WeatherExportTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void binaryRoundTripWithGapsAndCurrentValues() throws IOException {
+        long[] hours = new long[72];
+        for (int i = 0; i < hours.length; i++) {
+            hours[i] = 480_000 + i;
+        }
+        Map<String, double[]> columns = new LinkedHashMap<>();
+        double[] temperature = new double[hours.length];
+        double[] pressure = new double[hours.length];
+        for (int i = 0; i < hours.length; i++) {
+            temperature[i] = i % 10 == 3 ? Double.NaN : Math.round((Math.sin(i / 4.0) * 8 + 12) * 10) / 10.0;
+            pressure[i] = 1013.25 + Math.cos(i) / 3;
+        }
+        columns.put("temperature_2m", temperature);
+        columns.put("surface_pressure", pressure);
+        HourlyWeather weather = new HourlyWeather(52.23, 21.01, hours, columns,
+                Map.of("temperature_2m", 14.2, "windspeed", -0.0));
+
+        assertSameWeather(weather, roundTrip(weather));
+    }
+
+    @Test
+    void binaryRoundTripWithNonConsecutiveNegativeHours() throws IOException {
+        long[] hours = {-48, -47, -20, 0, 5};
+        double[] values = {-0.5, Double.NaN, 0.0, 1e-3, 7.0};
+        HourlyWeather weather = new HourlyWeather(-33.9, 151.2, hours, Map.of("t", values), Map.of());
+
+        assertSameWeather(weather, roundTrip(weather));
+    }
+
+    @Test
+    void binaryRoundTripOfEmptyAndSingleRowResults() throws IOException {
+        HourlyWeather empty = new HourlyWeather(0, 0, new long[0], Map.of("t", new double[0]), Map.of());
+        assertSameWeather(empty, roundTrip(empty));
+
+        HourlyWeather noColumns = new HourlyWeather(1, 2, new long[0], Map.of(), Map.of("t", 3.0));
+        assertSameWeather(noColumns, roundTrip(noColumns));
+
+        HourlyWeather single = new HourlyWeather(1, 2, new long[] {480_000}, Map.of("t", new double[] {Double.NaN}), Map.of());
+        assertSameWeather(single, roundTrip(single));
+    }
+
+    @Test
+    void exportPicksFormatFromExtension() throws IOException {
+        HourlyWeather weather = new HourlyWeather(50.06, 19.94, new long[] {0, 1},
+                Map.of("temperature_2m", new double[] {1.5, Double.NaN}), Map.of());
+
+        Path csv = dir.resolve("pogoda.csv");
+        WeatherExport.export(weather, csv);
+        String text = Files.readString(csv, StandardCharsets.UTF_8);
+        assertEquals("time,temperature_2m\r\n1970-01-01T00:00,1.5\r\n1970-01-01T01:00,\r\n", text);
+
+        Path gzip = dir.resolve("pogoda.CSV.GZ");
+        WeatherExport.export(weather, gzip);
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(gzip))) {
+            assertEquals(text, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        Path binary = dir.resolve("pogoda.wxc");
+        WeatherExport.export(weather, binary);
+        try (InputStream in = Files.newInputStream(binary)) {
+            assertSameWeather(weather, WeatherExport.readBinary(in));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> WeatherExport.export(weather, dir.resolve("pogoda.txt")));
+    }
+
+    @Test
+    void formatForFileName() {
+        assertEquals(WeatherExport.Format.CSV, WeatherExport.Format.forFileName("a.csv"));
+        assertEquals(WeatherExport.Format.CSV_GZIP, WeatherExport.Format.forFileName("a.csv.gz"));
+        assertEquals(WeatherExport.Format.BINARY, WeatherExport.Format.forFileName("A.WXC"));
+        assertNull(WeatherExport.Format.forFileName("a.gz"));
+        assertNull(WeatherExport.Format.forFileName("wxc"));
+    }
+
+    @Test
+    void damagedBinaryIsRejected() throws IOException {
+        assertThrows(IOException.class, () -> WeatherExport.readBinary(new ByteArrayInputStream("time,t\r\n".getBytes(StandardCharsets.UTF_8))));
+
+        HourlyWeather weather = new HourlyWeather(1, 2, new long[] {0, 1, 2}, Map.of("t", new double[] {1, 2, 3}), Map.of());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WeatherExport.write(weather, WeatherExport.Format.BINARY, out);
+        byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() - 5);
+        assertThrows(IOException.class, () -> WeatherExport.readBinary(new ByteArrayInputStream(truncated)));
+    }
+
+    private static HourlyWeather roundTrip(HourlyWeather weather) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WeatherExport.write(weather, WeatherExport.Format.BINARY, out);
+        return WeatherExport.readBinary(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    // Wartości porównywane bit w bit (NaN == NaN, 0.0 != -0.0)
+    private static void assertSameWeather(HourlyWeather expected, HourlyWeather actual) {
+        assertEquals(expected.getLatitude(), actual.getLatitude());
+        assertEquals(expected.getLongitude(), actual.getLongitude());
+        assertArrayEquals(expected.getEpochHours(), actual.getEpochHours());
+        assertEquals(expected.getParameters(), actual.getParameters());
+        for (String param : expected.getParameters()) {
+            double[] want = expected.getColumn(param);
+            double[] got = actual.getColumn(param);
+            assertEquals(want.length, got.length);
+            for (int i = 0; i < want.length; i++) {
+                assertEquals(Double.doubleToLongBits(want[i]), Double.doubleToLongBits(got[i]), param + " godzina " + i);
+            }
+        }
+        assertEquals(expected.getCurrentValues().keySet(), actual.getCurrentValues().keySet());
+        for (Map.Entry<String, Double> entry : expected.getCurrentValues().entrySet()) {
+            assertEquals(Double.doubleToLongBits(entry.getValue()),
+                    Double.doubleToLongBits(actual.getCurrentValues().get(entry.getKey())), entry.getKey());
+        }
+    }
+}
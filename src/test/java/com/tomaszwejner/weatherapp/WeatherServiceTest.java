@@ -0,0 +1,136 @@
+package com.tomaszwejner.weatherapp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Odczyt przez WeatherService z lokalnego magazynu - bez Redisa i bez żadnego zapytania do Open-Meteo
+class WeatherServiceTest {
+
+    private static final double LAT = 52.23;
+    private static final double LON = 21.01;
+
+    @TempDir
+    Path dir;
+
+    private TimeSeriesStore store;
+    private WeatherCache cache;
+    private WeatherService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = TimeSeriesStore.open(dir, 1 << 16);
+        cache = new WeatherCache(new LocalCache(1000, 1 << 20),
+                new RedisCache(false, "localhost", 6379, 100, 1, 1, 0, 1000));
+        service = new WeatherService(new HttpTransport(Duration.ofMillis(100)), cache, store);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        store.close();
+    }
+
+    @Test
+    void historyIsServedFromStoreWithoutNetwork() throws Exception {
+        LocalDate yesterday = LocalDate.now(ZoneOffset.UTC).minusDays(1);
+        double[] values = archive(yesterday.minusDays(2), 3);
+
+        HourlyWeather weather = service.getHistoricalWeather(LAT, LON, List.of("temperature_2m"), 3);
+        assertTrue(weather.isFromCache());
+        assertEquals(72, weather.size());
+        assertEquals(yesterday.minusDays(2).toEpochDay() * 24, weather.getEpochHour(0));
+        assertArrayEquals(values, weather.getColumn("temperature_2m"));
+
+        // Dni z magazynu trafiły do cache - serwis bez magazynu też je zwraca
+        WeatherService withoutStore = new WeatherService(new HttpTransport(Duration.ofMillis(100)), cache);
+        assertArrayEquals(values, withoutStore.getHistoricalWeather(LAT, LON, List.of("temperature_2m"), 3).getColumn("temperature_2m"));
+    }
+
+    // Wartość w cache, której nie da się zdekodować, to brak - dzień jest uzupełniany i nadpisywany
+    @Test
+    void undecodableCacheValueIsTreatedAsMissing() throws Exception {
+        LocalDate yesterday = LocalDate.now(ZoneOffset.UTC).minusDays(1);
+        double[] values = archive(yesterday.minusDays(2), 3);
+        String key = service.generateCacheKey("day", CacheKeys.snap(LAT, LON), List.of("temperature_2m"), yesterday.toString());
+        cache.set(key, 3600, "~nowsze-kodowanie");
+
+        HourlyWeather weather = service.getHistoricalWeather(LAT, LON, List.of("temperature_2m"), 3);
+        assertArrayEquals(values, weather.getColumn("temperature_2m"));
+        assertArrayEquals(Arrays.copyOfRange(values, 48, 72), ColumnCodec.decodeColumn(cache.get(key)).values());
+    }
+
+    @Test
+    void storedRangeKeepsGapsAsNaN() throws Exception {
+        LocalDate first = LocalDate.of(2024, 1, 10);
+        double[] values = archive(first, 2);
+
+        HourlyWeather weather = service.getStoredWeather(LAT, LON, List.of("temperature_2m"),
+                first.minusDays(1).toString(), first.plusDays(1).toString());
+        assertEquals(72, weather.size());
+        double[] column = weather.getColumn("temperature_2m");
+        for (int i = 0; i < 24; i++) {
+            assertTrue(Double.isNaN(column[i]));
+        }
+        assertArrayEquals(values, Arrays.copyOfRange(column, 24, 72));
+    }
+
+    @Test
+    void storedRangeWithoutDataIsEmpty() throws Exception {
+        assertTrue(service.getStoredWeather(LAT, LON, List.of("temperature_2m"), 5).isEmpty());
+        assertTrue(new WeatherService(new HttpTransport(Duration.ofMillis(100)), null, null)
+                .getStoredWeather(LAT, LON, List.of("temperature_2m"), "2024-01-01", "2024-01-02").isEmpty());
+    }
+
+    @Test
+    void storedRangeIsValidated() {
+        assertThrows(IllegalArgumentException.class, () ->
+                service.getStoredWeather(LAT, LON, List.of("temperature_2m"), "2024-01-02", "2024-01-01"));
+        assertThrows(IllegalArgumentException.class, () ->
+                service.getStoredWeather(LAT, LON, List.of("temperature_2m"), "2020-01-01", "2024-01-01"));
+        assertThrows(IllegalArgumentException.class, () ->
+                service.getStoredWeather(LAT, LON, List.of("temperature_2m&x=1"), 3));
+        assertThrows(IllegalArgumentException.class, () ->
+                service.getStoredWeather(LAT, LON, List.of("temperature_2m"), 0));
+    }
+
+    // /v1/forecast sięga najwyżej MAX_HISTORY_DAYS dni wstecz - dłuższej historii nie wysyłamy do API
+    @Test
+    void historyRangeIsLimitedToForecastApiWindow() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        assertThrows(IllegalArgumentException.class, () ->
+                service.getHistoricalWeather(LAT, LON, List.of("temperature_2m"), WeatherService.MAX_HISTORY_DAYS + 1));
+        assertThrows(IllegalArgumentException.class, () ->
+                service.getWeatherForecast(LAT, LON, List.of("temperature_2m"),
+                        today.minusDays(WeatherService.MAX_HISTORY_DAYS + 1).toString(), today.toString()));
+    }
+
+    // Zapisuje w magazynie pełne doby od first (tak jak robi to WeatherService po pobraniu)
+    private double[] archive(LocalDate first, int days) throws IOException {
+        long[] hours = new long[days * 24];
+        double[] values = new double[hours.length];
+        for (int i = 0; i < hours.length; i++) {
+            hours[i] = first.toEpochDay() * 24 + i;
+            values[i] = Math.round(Math.sin(i / 5.0) * 100) / 10.0;
+        }
+        Map<String, double[]> columns = new LinkedHashMap<>();
+        columns.put("temperature_2m", values);
+        store.append(CacheKeys.snap(LAT, LON).key(), new HourlyWeather(LAT, LON, hours, columns, Map.of()));
+        return values;
+    }
+}